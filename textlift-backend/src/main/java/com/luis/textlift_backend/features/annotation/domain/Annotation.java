@@ -30,12 +30,25 @@ public class Annotation {
             mappedBy = "annotation",
             cascade = CascadeType.ALL
     )
+    @OrderBy("chunkIndex ASC")
     @JsonManagedReference
     private List<AnnotationNote> notes;
 
     @Column
     private Integer version = 0;
 
+    //False while generation is still running (or was interrupted and awaits a retry)
+    @Column(nullable = false)
+    private boolean completed;
+
+    //Checkpoint: chunks [0, chunksCompleted) already have their notes stored
+    @Column(nullable = false)
+    private int chunksCompleted;
+
+    //Document whose text the checkpoint's chunk indices refer to
+    @Column
+    private UUID sourceDocumentId;
+
     @Column
     @CreatedDate
     private Instant createdAt;
@@ -44,6 +57,10 @@ public class Annotation {
     @LastModifiedDate
     private Instant updatedAt;
 
+    public UUID getId() {
+        return id;
+    }
+
     public Textbook getTextbook() {
         return textbook;
     }
@@ -68,6 +85,30 @@ public class Annotation {
         this.version = version;
     }
 
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    public int getChunksCompleted() {
+        return chunksCompleted;
+    }
+
+    public void setChunksCompleted(int chunksCompleted) {
+        this.chunksCompleted = chunksCompleted;
+    }
+
+    public UUID getSourceDocumentId() {
+        return sourceDocumentId;
+    }
+
+    public void setSourceDocumentId(UUID sourceDocumentId) {
+        this.sourceDocumentId = sourceDocumentId;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,76 @@
+package com.luis.textlift_backend.features.annotation.domain;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.Instant;
+import java.util.UUID;
+
+//Cached model output for one chunk of textbook text, keyed by the hash of the normalized chunk,
+//the model that produced it and the prompt version it was produced with
+@Entity
+@Table(
+        name = "annotation_chunk_cache",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"chunk_hash", "model", "prompt_version"})
+)
+public class AnnotationChunkResult {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false, length = 64)
+    private String chunkHash;
+
+    @Column(nullable = false)
+    private String model;
+
+    @Column(nullable = false)
+    private int promptVersion;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String notesJson;
+
+    @CreationTimestamp
+    @Column(updatable = false)
+    private Instant createdAt;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getChunkHash() {
+        return chunkHash;
+    }
+
+    public void setChunkHash(String chunkHash) {
+        this.chunkHash = chunkHash;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public int getPromptVersion() {
+        return promptVersion;
+    }
+
+    public void setPromptVersion(int promptVersion) {
+        this.promptVersion = promptVersion;
+    }
+
+    public String getNotesJson() {
+        return notesJson;
+    }
+
+    public void setNotesJson(String notesJson) {
+        this.notesJson = notesJson;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -36,6 +36,14 @@ public class AnnotationNote {
     @Column(columnDefinition = "TEXT")
     private String location;
 
+    //Which chunk of the book the note came from; notes are kept in chunk order
+    @Column
+    private Integer chunkIndex;
+
+    //PDF page (1-based) the quote was found on, from the document's page index; null when unknown
+    @Column
+    private Integer page;
+
     @Column
     @CreatedDate
     private Instant createdAt;
@@ -84,6 +92,22 @@ public class AnnotationNote {
         this.location = location;
     }
 
+    public Integer getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(Integer chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public Integer getPage() {
+        return page;
+    }
+
+    public void setPage(Integer page) {
+        this.page = page;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -109,6 +133,8 @@ public class AnnotationNote {
                 ", reason='" + reason + '\'' +
                 ", quote='" + quote + '\'' +
                 ", location='" + location + '\'' +
+                ", chunkIndex=" + chunkIndex +
+                ", page=" + page +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
                 '}';
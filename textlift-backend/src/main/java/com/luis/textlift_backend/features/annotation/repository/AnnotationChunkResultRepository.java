@@ -0,0 +1,27 @@
+package com.luis.textlift_backend.features.annotation.repository;
+
+import com.luis.textlift_backend.features.annotation.domain.AnnotationChunkResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface AnnotationChunkResultRepository extends JpaRepository<AnnotationChunkResult, UUID> {
+
+    @Query("""
+            select c.notesJson from AnnotationChunkResult c
+            where c.chunkHash = :chunkHash and c.model = :model and c.promptVersion = :promptVersion
+            """)
+    Optional<String> findNotesJson(String chunkHash, String model, int promptVersion);
+
+    //Two documents can annotate the same chunk at once; the first result wins and the other is dropped
+    @Modifying
+    @Query(value = """
+            insert into annotation_chunk_cache (id, chunk_hash, model, prompt_version, notes_json, created_at)
+            values (gen_random_uuid(), :chunkHash, :model, :promptVersion, :notesJson, now())
+            on conflict (chunk_hash, model, prompt_version) do nothing
+            """, nativeQuery = true)
+    int insertIfAbsent(String chunkHash, String model, int promptVersion, String notesJson);
+}
@@ -2,8 +2,14 @@ package com.luis.textlift_backend.features.annotation.repository;
 
 import com.luis.textlift_backend.features.annotation.domain.AnnotationNote;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.UUID;
 
 public interface AnnotationNoteRepository extends JpaRepository<AnnotationNote, UUID> {
+    //Notes of an unfinished annotation whose checkpoint is started over for another document
+    @Modifying
+    @Query("delete from AnnotationNote n where n.annotation.id = :annotationId")
+    int deleteByAnnotationId(UUID annotationId);
 }
@@ -1,10 +1,24 @@
 package com.luis.textlift_backend.features.annotation.repository;
 
 import com.luis.textlift_backend.features.annotation.domain.Annotation;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.Optional;
 import java.util.UUID;
 
 public interface AnnotationRepository extends JpaRepository<Annotation, UUID> {
+    Optional<Annotation> findByTextbook_Id(UUID textbookId);
+
+    //Serializes checkpoint writes when two jobs happen to annotate the same textbook
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Annotation a where a.id = :id")
+    Optional<Annotation> lockById(UUID id);
+
+    //Taken when a run starts, so two documents of one textbook agree on whose text the checkpoint follows
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Annotation a where a.textbook.id = :textbookId")
+    Optional<Annotation> lockByTextbookId(UUID textbookId);
 }
@@ -0,0 +1,66 @@
+package com.luis.textlift_backend.features.annotation.service;
+
+import com.luis.textlift_backend.features.annotation.repository.AnnotationChunkResultRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+//Content-addressed store of parsed model output per chunk. Chunks are normalized before hashing
+//so OCR/extraction noise (ligatures, spacing, line wrapping) does not defeat the cache.
+//Results are only reused for the same model and prompt version.
+@Service
+public class AnnotationChunkCache {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    //Bump whenever the annotation prompt changes so old results stop matching
+    static final int PROMPT_VERSION = 1;
+
+    private final AnnotationChunkResultRepository repository;
+    private final String model;
+    private final boolean enabled;
+
+    public AnnotationChunkCache(AnnotationChunkResultRepository repository,
+                                @Value("${spring.ai.ollama.chat.model:unknown}") String model,
+                                @Value("${textlift.annotation.chunk-cache.enabled:true}") boolean enabled) {
+        this.repository = repository;
+        this.model = model;
+        this.enabled = enabled;
+    }
+
+    public Optional<String> lookup(String chunkHash) {
+        if (!enabled) return Optional.empty();
+        return repository.findNotesJson(chunkHash, model, PROMPT_VERSION);
+    }
+
+    @Transactional
+    public void store(String chunkHash, String notesJson) {
+        if (!enabled) return;
+        repository.insertIfAbsent(chunkHash, model, PROMPT_VERSION, notesJson);
+    }
+
+    public static String hash(String chunk) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(normalize(chunk).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Hash algorithm unavailable", e);
+        }
+    }
+
+    static String normalize(String chunk) {
+        String s = Normalizer.normalize(chunk, Normalizer.Form.NFKC);
+        //Soft hyphens left behind by re-flowed text
+        s = s.replace("\u00AD", "");
+        return WHITESPACE.matcher(s).replaceAll(" ").strip();
+    }
+}
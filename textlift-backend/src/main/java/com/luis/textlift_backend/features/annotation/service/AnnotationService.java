@@ -7,32 +7,44 @@ import com.luis.textlift_backend.features.annotation.domain.AnnotationNote;
 import com.luis.textlift_backend.features.annotation.repository.AnnotationNoteRepository;
 import com.luis.textlift_backend.features.annotation.repository.AnnotationRepository;
 import com.luis.textlift_backend.features.annotation.api.dto.AnnotationFetchResponseDto;
-import com.luis.textlift_backend.features.auth.domain.User;
-import com.luis.textlift_backend.features.auth.repository.UserRepository;
+import com.luis.textlift_backend.features.auth.service.CurrentUser;
 import com.luis.textlift_backend.features.document.domain.Document;
 import com.luis.textlift_backend.features.document.domain.DocumentStatus;
 import com.luis.textlift_backend.features.document.repository.DocumentRepository;
+import com.luis.textlift_backend.features.document.service.events.DocumentStatusChangedEvent;
+import com.luis.textlift_backend.features.storage.service.BlobKeys;
+import com.luis.textlift_backend.features.storage.service.BlobStore;
+import com.luis.textlift_backend.features.storage.service.CompressedText;
+import com.luis.textlift_backend.features.storage.service.TextPageIndex;
 import com.luis.textlift_backend.features.textbook.domain.Textbook;
 import com.luis.textlift_backend.features.textbook.repository.TextbookRepository;
 import com.luis.textlift_backend.features.upload.repository.UploadSessionRepository;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
+import com.luis.textlift_backend.features.config.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
 public class AnnotationService {
@@ -42,23 +54,47 @@ public class AnnotationService {
     private final TextbookRepository textbookRepository;
     private final AnnotationRepository annotationRepository;
     private final AnnotationNoteRepository annotationNoteRepository;
-    private final UserRepository userRepository;
     private final UploadSessionRepository uploadSessionRepository;
+    private final Executor annotationExecutor;
+    private final int maxInFlight;
+    private final int chunkMaxTokens;
+    private final int chunkOverlapTokens;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate transactionTemplate;
+    private final AnnotationChunkCache chunkCache;
+    private final PipelineMetrics metrics;
+    private final BlobStore blobStore;
     private record aiResponse(String note, String reason, String quote, String location) {}
 
 
     public AnnotationService(ChatClient.Builder chatClientBuilder, DocumentRepository documentRepository,
                              TextbookRepository textbookRepository, AnnotationRepository annotationRepository,
                              AnnotationNoteRepository annotationNoteRepository,
-                             UserRepository userRepository,
-                             UploadSessionRepository uploadSessionRepository) {
+                             UploadSessionRepository uploadSessionRepository,
+                             @Qualifier("annotationExecutor") Executor annotationExecutor,
+                             @Value("${textlift.annotation.book-max-in-flight:${textlift.annotation.max-in-flight:4}}") int maxInFlight,
+                             @Value("${textlift.annotation.chunk.max-tokens:3000}") int chunkMaxTokens,
+                             @Value("${textlift.annotation.chunk.overlap-tokens:0}") int chunkOverlapTokens,
+                             ApplicationEventPublisher events,
+                             TransactionTemplate transactionTemplate,
+                             AnnotationChunkCache chunkCache,
+                             PipelineMetrics metrics,
+                             BlobStore blobStore) {
         this.chatClient = chatClientBuilder.build();
         this.documentRepository = documentRepository;
         this.textbookRepository = textbookRepository;
         this.annotationRepository = annotationRepository;
         this.annotationNoteRepository = annotationNoteRepository;
-        this.userRepository = userRepository;
         this.uploadSessionRepository = uploadSessionRepository;
+        this.annotationExecutor = annotationExecutor;
+        this.maxInFlight = maxInFlight;
+        this.chunkMaxTokens = chunkMaxTokens;
+        this.chunkOverlapTokens = chunkOverlapTokens;
+        this.events = events;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkCache = chunkCache;
+        this.metrics = metrics;
+        this.blobStore = blobStore;
     }
 
     public void generateAnnotations(UUID textbookId, UUID documentId) {
@@ -77,73 +113,290 @@ public class AnnotationService {
                                 "Could not find textbook!!!"
                         ));
 
+        //Annotating is the long stage; let watchers (and anyone re-uploading the same book) know it started
+        if (documentObj.getStatus() != DocumentStatus.ANNOTATIONS_GENERATING) {
+            documentObj.setStatus(DocumentStatus.ANNOTATIONS_GENERATING);
+            documentRepository.save(documentObj);
+            events.publishEvent(new DocumentStatusChangedEvent(documentObj.getId(), DocumentStatus.ANNOTATIONS_GENERATING));
+        }
+
+        //Resume from the checkpoint of an interrupted run; a finished annotation only needs the status
+        Annotation annotation = startOrResumeAnnotation(texObj, documentObj);
+        if (annotation == null) {
+            LOG.info("Textbook {} is being annotated from another document; document {} waits for it", textbookId, documentId);
+            return;
+        }
+        if (annotation.isCompleted()) {
+            markReady(documentObj);
+            return;
+        }
+        int resumeFrom = annotation.getChunksCompleted();
+        if (resumeFrom > 0) {
+            LOG.info("Resuming annotation {} for textbook {} at chunk {}", annotation.getId(), textbookId, resumeFrom);
+        }
+
         //We want to split the textbook into individual chunks with enough context such that
-        //AI does not take a long time to generate annotations
-        try (BufferedReader reader = new BufferedReader(new FileReader(documentObj.getFilePath()))) {
-            int targetChars = 12 * 1024;
-            List<aiResponse> all = new ArrayList<>();
-            StringBuilder sb = new StringBuilder(targetChars + 2048);
-
-            String line;
-            int count = 0;
-
-            while ((line = reader.readLine()) != null) {
-
-                // If adding this line would exceed the chunk size, send the current chunk first
-                if (sb.length() + line.length() + 1 > targetChars && !sb.isEmpty()) {
-                    String chunk = sb.toString();
-                    sb.setLength(0);
-                    String raw = this.chatClient.prompt()
-                            .user(buildPrompt(chunk))
-                            .call()
-                            .content();
-                    List<aiResponse> chunkNotes = parseAiResponse(raw);
-
-                    if (chunkNotes != null) all.addAll(chunkNotes);
+        //AI does not take a long time to generate annotations (sized by token budget, see
+        //TextChunker). Chunks are sent to the model concurrently (bounded per book by maxInFlight,
+        //per node by the annotation executor); their notes are stored in chunk order as soon as
+        //every earlier chunk is done, advancing the checkpoint with them. maxInFlight counts a chunk
+        //until it is stored, so finished chunks behind a slow one do not pile up in memory.
+        //Inflated block by block as the chunks are read
+        TextPageIndex pages = loadPageIndex(documentObj);
+        int totalChunks = 0;
+        try (BufferedReader reader = new BufferedReader(CompressedText.reader(blobStore, documentObj.getBlobKey()))) {
+            TextChunker chunker = new TextChunker(reader, pages, chunkMaxTokens, chunkOverlapTokens);
+            ArrayDeque<PendingChunk> pending = new ArrayDeque<>();
+
+            TextChunker.Chunk chunk;
+            while ((chunk = chunker.next()) != null) {
+                totalChunks = chunk.index() + 1;
+                // Chunks before the checkpoint are only re-read to find the boundaries
+                if (chunk.index() < resumeFrom) {
+                    continue;
                 }
+                //Stop sending chunks once one has failed; this stores the ones before it and throws.
+                //Otherwise make room: wait for the oldest while maxInFlight chunks are still unstored
+                boolean failed = pending.stream().anyMatch(p -> p.notes().isCompletedExceptionally());
+                checkpointFinished(annotation.getId(), documentId, pending, failed ? 0 : maxInFlight - 1);
+                pending.add(new PendingChunk(chunk.index(),
+                        submitChunk(chunk.text(), chunk.index(), chunk.start(), pages)));
+            }
+            checkpointFinished(annotation.getId(), documentId, pending, 0);
+        } catch (IOException e) {
+            //Retried by the pipeline; the next attempt picks up at the checkpoint
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not read extracted text", e);
+        }
+
+        List<Document> waited = completeAnnotation(annotation.getId(), textbookId, documentObj, totalChunks);
+        events.publishEvent(new DocumentStatusChangedEvent(documentObj.getId(), DocumentStatus.ANNOTATIONS_READY));
+        for (Document other : waited) {
+            events.publishEvent(new DocumentStatusChangedEvent(other.getId(), DocumentStatus.ANNOTATIONS_READY));
+        }
+    }
+
+    private record PendingChunk(int index, CompletableFuture<List<PlacedNote>> notes) {}
+
+    private record PlacedNote(aiResponse note, Integer page) {}
 
-                // Actually accumulate text
-                sb.append(line).append('\n');
+    //Documents extracted before page indexes existed have none; their notes get no page
+    private TextPageIndex loadPageIndex(Document documentObj) {
+        try {
+            return CompressedText.readPages(blobStore, BlobKeys.textPages(documentObj.getHash()));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not read page index", e);
+        }
+    }
+
+    //The page of the note's quote when it appears verbatim in the chunk, else the page the chunk starts on
+    private static Integer pageOf(aiResponse note, String chunk, long chunkStart, TextPageIndex pages) {
+        if (pages == null) return null;
+        int at = note.quote() == null || note.quote().isBlank() ? -1 : chunk.indexOf(note.quote());
+        int page = pages.pageAt(chunkStart + Math.max(at, 0));
+        return page > 0 ? page : null;
+    }
+
+    //Chunk indices come from one document's text, so the checkpoint belongs to the document that
+    //started it. Another scan or edition of the textbook does not resume it: while that document is
+    //still being annotated this returns null and the other one waits (completeAnnotation marks it
+    //ready too). Once it is not (its job died), the next document starts the checkpoint over.
+    private Annotation startOrResumeAnnotation(Textbook texObj, Document documentObj) {
+        return transactionTemplate.execute(status -> {
+            Annotation annotation = annotationRepository.lockByTextbookId(texObj.getId()).orElse(null);
+            if (annotation == null) {
+                Annotation created = new Annotation();
+                created.setTextbook(texObj);
+                created.setCompleted(false);
+                created.setChunksCompleted(0);
+                created.setSourceDocumentId(documentObj.getId());
+                return annotationRepository.save(created);
+            }
+            if (annotation.isCompleted() || documentObj.getId().equals(annotation.getSourceDocumentId())) {
+                return annotation;
             }
 
-            // flush remainder AFTER EOF
-            if (!sb.isEmpty()) {
-                String raw = this.chatClient.prompt()
-                        .user(buildPrompt(sb.toString()))
-                        .call()
-                        .content();
-                List<aiResponse> chunkNotes = parseAiResponse(raw);
+            UUID owner = annotation.getSourceDocumentId();
+            boolean ownerRunning = owner != null && documentRepository.findById(owner)
+                    .filter(doc -> doc.getStatus() == DocumentStatus.ANNOTATIONS_GENERATING)
+                    .isPresent();
+            if (ownerRunning) {
+                return null;
+            }
+            if (annotation.getChunksCompleted() > 0) {
+                LOG.info("Annotation {} of document {} is started over for document {}",
+                        annotation.getId(), owner, documentObj.getId());
+                annotationNoteRepository.deleteByAnnotationId(annotation.getId());
+                annotation.setChunksCompleted(0);
+            }
+            annotation.setSourceDocumentId(documentObj.getId());
+            return annotationRepository.save(annotation);
+        });
+    }
 
-                if (chunkNotes != null) all.addAll(chunkNotes);
+    //Stores the notes of finished chunks at the head of the queue, and waits on the head while more
+    //than keep chunks are queued. Later chunks that finished early wait for the head in memory.
+    //A failed chunk (the model could not be reached; bad output is not a failure, see annotateChunk)
+    //ends the run with a retryable 503: the checkpoint stays on it, so the pipeline's retry resumes
+    //there instead of the book being completed without that chunk's notes.
+    private void checkpointFinished(UUID annotationId, UUID documentId, ArrayDeque<PendingChunk> pending, int keep) {
+        while (!pending.isEmpty() && (pending.size() > keep || pending.peekFirst().notes().isDone())) {
+            PendingChunk chunk = pending.pollFirst();
+            List<PlacedNote> notes;
+            try {
+                notes = chunk.notes().join();
+            } catch (CompletionException | CancellationException e) {
+                //Let the chunks still out finish; the ones that succeed are in the chunk cache for the retry
+                pending.forEach(p -> p.notes().handle((n, err) -> null).join());
+                pending.clear();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Annotation of chunk " + chunk.index() + " failed", e.getCause() != null ? e.getCause() : e);
             }
-            //Now, process the returned JSON, and create AnnotationNote objects, and map to our annotation obj
-            Annotation annotation = new Annotation();
-            annotation.setTextbook(texObj);
-            annotation.setVersion(annotation.getVersion() + 1);
-            annotationRepository.save(annotation);
+            storeChunk(annotationId, documentId, chunk.index(), notes);
+        }
+    }
 
-            for (aiResponse note : all) {
+    //The chunk's notes and the advanced checkpoint commit together. Notes go out as one JDBC batch
+    //(hibernate.jdbc.batch_size); ids are generated client side so batching is not disabled.
+    private void storeChunk(UUID annotationId, UUID documentId, int chunkIndex, List<PlacedNote> chunkNotes) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Annotation annotation = annotationRepository.lockById(annotationId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find annotation!!!"));
+            //This run was given up on and another document started the checkpoint over
+            if (!documentId.equals(annotation.getSourceDocumentId())) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Annotation was taken over by another document");
+            }
+            //Another run on the same textbook already stored this chunk
+            if (annotation.getChunksCompleted() != chunkIndex) {
+                return;
+            }
+
+            List<AnnotationNote> notes = new ArrayList<>(chunkNotes.size());
+            for (PlacedNote placed : chunkNotes) {
+                aiResponse note = placed.note();
                 AnnotationNote x = new AnnotationNote();
                 x.setAnnotation(annotation);
                 x.setNote(note.note());
                 x.setReason(note.reason());
                 x.setQuote(note.quote());
                 x.setLocation(note.location());
-                annotationNoteRepository.save(x);
+                x.setChunkIndex(chunkIndex);
+                x.setPage(placed.page());
+                notes.add(x);
             }
+            annotationNoteRepository.saveAll(notes);
+            annotation.setChunksCompleted(chunkIndex + 1);
+        });
+    }
 
+    //Only an annotation with every chunk stored (annotated or served from the cache) is completed;
+    //identifyTextbook reuses completed annotations for every later upload of the book. Uploads of the
+    //textbook that waited on this one (see startOrResumeAnnotation) are ready with it; they are returned.
+    private List<Document> completeAnnotation(UUID annotationId, UUID textbookId, Document documentObj, int totalChunks) {
+        return transactionTemplate.execute(status -> {
+            Annotation annotation = annotationRepository.lockById(annotationId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find annotation!!!"));
+            if (annotation.getChunksCompleted() < totalChunks) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Annotation stopped at chunk " + annotation.getChunksCompleted() + " of " + totalChunks);
+            }
+            if (!annotation.isCompleted()) {
+                annotation.setCompleted(true);
+                annotation.setVersion(annotation.getVersion() + 1);
+            }
             documentObj.setStatus(DocumentStatus.ANNOTATIONS_READY);
             documentRepository.save(documentObj);
-        }catch(IOException e) {
-            e.printStackTrace();
+
+            List<Document> waited = new ArrayList<>();
+            for (Document other : documentRepository.findByTextbook_IdAndStatus(textbookId, DocumentStatus.ANNOTATIONS_GENERATING)) {
+                if (other.getId().equals(documentObj.getId())) continue;
+                other.setStatus(DocumentStatus.ANNOTATIONS_READY);
+                documentRepository.save(other);
+                waited.add(other);
+            }
+            return waited;
+        });
+    }
+
+    private void markReady(Document documentObj) {
+        documentObj.setStatus(DocumentStatus.ANNOTATIONS_READY);
+        documentRepository.save(documentObj);
+        events.publishEvent(new DocumentStatusChangedEvent(documentObj.getId(), DocumentStatus.ANNOTATIONS_READY));
+    }
+
+    //The caller bounds how many of these are unstored at once (see generateAnnotations).
+    //A failed chunk completes the future exceptionally (see checkpointFinished).
+    private CompletableFuture<List<PlacedNote>> submitChunk(String chunk, int chunkIndex, long chunkStart,
+                                                            TextPageIndex pages) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                List<aiResponse> notes = annotateChunk(chunk);
+                List<PlacedNote> placed = new ArrayList<>(notes.size());
+                for (aiResponse note : notes) {
+                    placed.add(new PlacedNote(note, pageOf(note, chunk, chunkStart, pages)));
+                }
+                return placed;
+            } catch (RuntimeException e) {
+                LOG.warn("Annotation of chunk {} failed", chunkIndex, e);
+                throw e;
+            }
+        }, annotationExecutor);
+    }
+
+    //Chunks already annotated for any earlier document (same normalized text, model and prompt)
+    //are served from the chunk cache; only unseen chunks go to the model
+    private List<aiResponse> annotateChunk(String chunk) {
+        String chunkHash = AnnotationChunkCache.hash(chunk);
+        Optional<String> cached = chunkCache.lookup(chunkHash);
+        if (cached.isPresent()) {
+            metrics.chunkCached();
+            return parseAiResponse(cached.get());
+        }
+
+        metrics.chunkSent();
+        Timer.Sample sample = metrics.start();
+        String raw;
+        try {
+            raw = this.chatClient.prompt()
+                    .user(buildPrompt(chunk))
+                    .call()
+                    .content();
+        } catch (RuntimeException e) {
+            metrics.stop(sample, "llm_chunk", PipelineMetrics.OUTCOME_ERROR);
+            throw e;
+        }
+        List<aiResponse> notes;
+        try {
+            notes = parseAiResponse(raw);
+        } catch (IllegalStateException e) {
+            //Asking again tends to get the same answer, so the chunk is done without notes (as before
+            //checkpoints) rather than failing the book. Not cached, so a later upload asks again.
+            metrics.stop(sample, "llm_chunk", "parse_failure");
+            metrics.parseFailure();
+            LOG.warn("Skipping chunk with unparseable model output", e);
+            return List.of();
         }
+        metrics.stop(sample, "llm_chunk", PipelineMetrics.OUTCOME_SUCCESS);
+        metrics.notesParsed(notes.size());
+        try {
+            chunkCache.store(chunkHash, OBJECT_MAPPER.writeValueAsString(notes));
+        } catch (Exception e) {
+            //Only costs a future cache miss
+            LOG.warn("Could not cache annotation chunk {}", chunkHash, e);
+        }
+        return notes;
     }
 
     public void deleteExtractedText(UUID documentId) {
         documentRepository.findById(documentId).ifPresent(doc -> {
-            String path = doc.getFilePath();
-            if (path != null && !path.isBlank()) {
-                try { Files.deleteIfExists(Path.of(path)); } catch (IOException ignored) {}
+            String key = doc.getBlobKey();
+            if (key != null && !key.isBlank()) {
+                try {
+                    blobStore.delete(key);
+                    blobStore.delete(BlobKeys.textIndex(doc.getHash()));
+                    blobStore.delete(BlobKeys.textPages(doc.getHash()));
+                } catch (IOException ignored) {}
             }
         });
     }
@@ -162,12 +415,10 @@ public class AnnotationService {
     }
 
     private void ensureUserOwnsUploadForDocument(Document document) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByEmail(auth.getName())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
+        UUID userId = CurrentUser.id();
 
         String hash = document.getHash();
-        if (hash == null || !uploadSessionRepository.existsByUser_IdAndHash(user.getId(), hash)) {
+        if (hash == null || !uploadSessionRepository.existsByUser_IdAndHash(userId, hash)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You do not have access to this document");
         }
     }
@@ -204,16 +455,16 @@ public class AnnotationService {
         return s;
     }
 
+    //Unparseable output is an exception so annotateChunk can keep it out of the chunk cache
     private static List<aiResponse> parseAiResponse(String raw) {
         if (raw == null || raw.isBlank()) {
-            return List.of();
+            throw new IllegalStateException("Empty AI response");
         }
         String sanitized = sanitizeModelJson(raw);
         try {
             return OBJECT_MAPPER.readValue(sanitized, new TypeReference<List<aiResponse>>() {});
         } catch (Exception e) {
-            LOG.warn("Failed to parse AI response; returning empty list. raw={}", raw, e);
-            return List.of();
+            throw new IllegalStateException("Failed to parse AI response. raw=" + raw, e);
         }
     }
 }
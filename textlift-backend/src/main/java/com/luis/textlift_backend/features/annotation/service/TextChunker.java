@@ -0,0 +1,227 @@
+package com.luis.textlift_backend.features.annotation.service;
+
+import com.luis.textlift_backend.features.storage.service.TextPageIndex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+//Cuts extracted text into prompt-sized chunks while streaming it line by line, so only the chunk
+//being built is in memory. Chunks aim for maxTokens (estimated locally, see estimateTokens). A chunk
+//that would overflow ends on the best boundary in its second half: a page start, then a paragraph
+//end, then a sentence end, and only then mid-paragraph. Once half full it also ends at any
+//content-defined boundary line, so a book with a few extra or missing pages still cuts the rest of
+//its text into the same chunks (and hits the chunk cache).
+//Deterministic for the same text and settings, which the annotation checkpoint relies on.
+class TextChunker {
+    record Chunk(int index, long start, String text, int tokens) {}
+
+    //Declared weakest first; a cut prefers the strongest boundary
+    private enum Boundary { NONE, SENTENCE, PARAGRAPH, PAGE }
+
+    //A line of the text, or a piece of one that was too long to fit a chunk on its own.
+    //offset is its char offset in the text; newline is false for all but the last piece of a line.
+    private record Line(String text, boolean newline, long offset, int tokens, Boundary before) {
+        int length() {
+            return text.length() + (newline ? 1 : 0);
+        }
+    }
+
+    private final BufferedReader reader;
+    private final TextPageIndex pages;
+    private final int maxTokens;
+    private final int overlapTokens;
+
+    //Lines read (or handed back by a cut) that are not in the current chunk yet
+    private final ArrayDeque<Line> queued = new ArrayDeque<>();
+    //The chunk being built; its first overlapLines lines repeat the end of the previous chunk
+    private final List<Line> lines = new ArrayList<>();
+    private int overlapLines;
+    private int tokens;
+
+    private long offset;
+    private int nextPage = 2;
+    private String previous;
+    private int longestLine;
+    private int nextIndex;
+
+    //pages may be null (no page index); then page starts are not used as boundaries.
+    //The overlap is capped at a quarter of the budget so every chunk still makes progress.
+    TextChunker(BufferedReader reader, TextPageIndex pages, int maxTokens, int overlapTokens) {
+        if (maxTokens < 16) {
+            throw new IllegalArgumentException("maxTokens must be at least 16");
+        }
+        this.reader = reader;
+        this.pages = pages;
+        this.maxTokens = maxTokens;
+        this.overlapTokens = Math.max(0, Math.min(overlapTokens, maxTokens / 4));
+    }
+
+    //The next chunk, or null at the end of the text
+    Chunk next() throws IOException {
+        while (true) {
+            Line line = nextLine();
+            if (line == null) {
+                if (lines.size() <= overlapLines) return null;
+                return cut(lines.size());
+            }
+
+            boolean hasNewText = lines.size() > overlapLines;
+            if (hasNewText && tokens >= maxTokens / 2 && isChunkBoundary(line.text())) {
+                queued.addFirst(line);
+                return cut(lines.size());
+            }
+            if (hasNewText && tokens + line.tokens() > maxTokens) {
+                queued.addFirst(line);
+                return cut(bestCut());
+            }
+            lines.add(line);
+            tokens += line.tokens();
+        }
+    }
+
+    //Where the next chunk should start: before the strongest boundary past half the budget (the
+    //latest one on a tie), or after every line when there is none
+    private int bestCut() {
+        int best = lines.size();
+        Boundary bestBoundary = Boundary.NONE;
+        int before = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            if (i > overlapLines && before >= maxTokens / 2 && line.before().compareTo(bestBoundary) >= 0
+                    && line.before() != Boundary.NONE) {
+                best = i;
+                bestBoundary = line.before();
+            }
+            before += line.tokens();
+        }
+        return best;
+    }
+
+    //Emits lines[0, at) and starts the next chunk with the overlap, then lines[at, size)
+    private Chunk cut(int at) {
+        StringBuilder sb = new StringBuilder();
+        int chunkTokens = 0;
+        for (int i = 0; i < at; i++) {
+            Line line = lines.get(i);
+            sb.append(line.text());
+            if (line.newline()) sb.append('\n');
+            chunkTokens += line.tokens();
+        }
+        Chunk chunk = new Chunk(nextIndex++, lines.get(0).offset(), sb.toString(), chunkTokens);
+
+        for (int i = lines.size() - 1; i >= at; i--) {
+            queued.addFirst(lines.get(i));
+        }
+
+        //Trailing whole lines of this chunk, up to overlapTokens, but never all of it
+        int from = at;
+        int overlap = 0;
+        while (from - 1 > 0 && overlap + lines.get(from - 1).tokens() <= overlapTokens) {
+            from--;
+            overlap += lines.get(from).tokens();
+        }
+        List<Line> kept = new ArrayList<>(lines.subList(from, at));
+        lines.clear();
+        lines.addAll(kept);
+        overlapLines = kept.size();
+        tokens = overlap;
+        return chunk;
+    }
+
+    private Line nextLine() throws IOException {
+        if (!queued.isEmpty()) return queued.pollFirst();
+
+        String text = reader.readLine();
+        if (text == null) return null;
+
+        Boundary before = boundaryBefore(offset);
+        previous = text;
+        longestLine = Math.max(longestLine, text.length());
+
+        int lineTokens = estimateTokens(text);
+        int pieceBudget = Math.max(1, maxTokens / 4);
+        if (lineTokens <= pieceBudget) {
+            Line line = new Line(text, true, offset, lineTokens, before);
+            offset += line.length();
+            return line;
+        }
+
+        //A line longer than a quarter chunk (text without line breaks) goes in pieces, cut at spaces
+        int pieces = (lineTokens + pieceBudget - 1) / pieceBudget;
+        int target = Math.max(1, text.length() / pieces);
+        int start = 0;
+        while (start < text.length()) {
+            int end = pieceEnd(text, start, target);
+            String piece = text.substring(start, end);
+            Line line = new Line(piece, end == text.length(), offset, estimateTokens(piece),
+                    start == 0 ? before : Boundary.NONE);
+            offset += line.length();
+            queued.addLast(line);
+            start = end;
+        }
+        return queued.pollFirst();
+    }
+
+    private static int pieceEnd(String text, int start, int target) {
+        int end = start + target;
+        if (end >= text.length()) return text.length();
+        for (int i = end; i > start + target / 2; i--) {
+            if (Character.isWhitespace(text.charAt(i - 1))) return i;
+        }
+        //No space nearby; just keep surrogate pairs together
+        return Character.isLowSurrogate(text.charAt(end)) ? end + 1 : end;
+    }
+
+    private Boundary boundaryBefore(long lineOffset) {
+        if (pages != null) {
+            while (nextPage <= pages.pageCount() && pages.start(nextPage) < lineOffset) nextPage++;
+            if (nextPage <= pages.pageCount() && pages.start(nextPage) == lineOffset && lineOffset > 0) {
+                return Boundary.PAGE;
+            }
+        }
+        if (previous == null) return Boundary.NONE;
+        if (previous.isBlank()) return Boundary.PARAGRAPH;
+        if (endsSentence(previous)) {
+            //Justified text: a paragraph's last line stops well short of the others
+            return previous.length() < longestLine * 3 / 4 ? Boundary.PARAGRAPH : Boundary.SENTENCE;
+        }
+        return Boundary.NONE;
+    }
+
+    private static boolean endsSentence(String line) {
+        int i = line.length() - 1;
+        while (i >= 0 && Character.isWhitespace(line.charAt(i))) i--;
+        while (i >= 0 && "\"')]”’".indexOf(line.charAt(i)) >= 0) i--;
+        return i >= 0 && ".?!:".indexOf(line.charAt(i)) >= 0;
+    }
+
+    //Roughly one non-blank line in 32 qualifies
+    static boolean isChunkBoundary(String line) {
+        String normalized = AnnotationChunkCache.normalize(line);
+        return !normalized.isEmpty() && (normalized.hashCode() * 0x9E3779B1) >>> 27 == 0;
+    }
+
+    //Local stand-in for the model's tokenizer, tuned to err high for BPE vocabularies: an ASCII
+    //word or number is a token per 4 characters, every other visible character (punctuation,
+    //symbols, non-Latin scripts) a token of its own, whitespace free.
+    static int estimateTokens(CharSequence text) {
+        int tokens = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128 && Character.isLetterOrDigit(c)) {
+                run++;
+                continue;
+            }
+            if (run > 0) {
+                tokens += (run + 3) / 4;
+                run = 0;
+            }
+            if (!Character.isWhitespace(c) && !Character.isLowSurrogate(c)) tokens++;
+        }
+        return tokens + (run + 3) / 4;
+    }
+}
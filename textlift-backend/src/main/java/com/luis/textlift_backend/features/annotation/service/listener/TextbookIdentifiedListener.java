@@ -1,23 +1,22 @@
 package com.luis.textlift_backend.features.annotation.service.listener;
 
-import com.luis.textlift_backend.features.annotation.service.AnnotationService;
+import com.luis.textlift_backend.features.pipeline.domain.PipelineJobType;
+import com.luis.textlift_backend.features.pipeline.service.PipelineJobService;
 import com.luis.textlift_backend.features.textbook.service.events.TextbookIdentifiedEvent;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.event.TransactionPhase;
 import org.springframework.transaction.event.TransactionalEventListener;
 
 @Service
 public class TextbookIdentifiedListener {
-    private final AnnotationService annotationService;
-    public TextbookIdentifiedListener(AnnotationService annotationService) {
-        this.annotationService = annotationService;
+    private final PipelineJobService pipelineJobService;
+    public TextbookIdentifiedListener(PipelineJobService pipelineJobService) {
+        this.pipelineJobService = pipelineJobService;
     }
 
-    @Async("pipeLineExecutor")
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    //Annotation runs as a durable job; see PipelineJobWorker
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
     public void onIdentified(TextbookIdentifiedEvent event){
-        annotationService.generateAnnotations(event.textbookId(), event.documentId());
-        annotationService.deleteExtractedText(event.documentId());
+        pipelineJobService.enqueue(PipelineJobType.GENERATE_ANNOTATIONS, event.documentId(), event.textbookId());
     }
 }
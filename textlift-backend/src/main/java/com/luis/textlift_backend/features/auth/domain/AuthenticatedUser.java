@@ -0,0 +1,26 @@
+package com.luis.textlift_backend.features.auth.domain;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.UUID;
+
+//Lightweight principal built from JWT claims, so authenticated requests don't need to load the
+//User entity. getName() is the email, matching what auth.getName() returned for a User principal.
+public record AuthenticatedUser(UUID id, String email, RoleEnum role) implements Principal {
+
+    public static AuthenticatedUser from(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getRole().getName());
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role));
+    }
+}
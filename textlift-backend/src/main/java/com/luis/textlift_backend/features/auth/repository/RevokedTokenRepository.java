@@ -4,9 +4,16 @@ import com.luis.textlift_backend.features.auth.domain.RevokedToken;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 public interface RevokedTokenRepository extends JpaRepository<RevokedToken, UUID> {
     boolean existsByToken(String token);
     long deleteByExpiresAtBefore(Instant expiresAt);
+
+    //Startup load of every revocation that can still matter
+    List<RevokedToken> findByExpiresAtAfter(Instant now);
+
+    //Incremental sync of revocations made on other nodes
+    List<RevokedToken> findByRevokedAtAfter(Instant since);
 }
@@ -0,0 +1,26 @@
+package com.luis.textlift_backend.features.auth.service;
+
+import com.luis.textlift_backend.features.auth.domain.AuthenticatedUser;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.UUID;
+
+//Reads the caller from the security context populated by JwtAuthenticationFilter (no DB round-trip)
+public final class CurrentUser {
+    private CurrentUser() {}
+
+    public static AuthenticatedUser get() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof AuthenticatedUser user)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found!!");
+        }
+        return user;
+    }
+
+    public static UUID id() {
+        return get().id();
+    }
+}
@@ -1,26 +1,48 @@
 package com.luis.textlift_backend.features.auth.service;
 
+import com.luis.textlift_backend.features.auth.domain.AuthenticatedUser;
+import com.luis.textlift_backend.features.auth.domain.RoleEnum;
+import com.luis.textlift_backend.features.auth.domain.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
-import java.security.Key;
+import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
-    @Value("${JWT_SECRET}")
-    private String secretKey;
-    @Value("3600000")
-    private Long jwtExpiration;
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+
+    //Decoding the secret and building the parser are not free, so both happen once at startup.
+    //JwtParser is immutable and thread-safe.
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final long jwtExpiration;
+
+    public JwtService(@Value("${JWT_SECRET}") String secretKey,
+                      @Value("3600000") long jwtExpiration) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+        this.jwtExpiration = jwtExpiration;
+    }
+
+    //Verifies the signature and expiry and returns the claims; throws a JwtException
+    //(ExpiredJwtException, SignatureException, ...) otherwise. Parse once and read everything from the result.
+    public Claims parseClaims(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
 
     //extract username from JWT
     public String extractUsername(String token) {
@@ -28,12 +50,18 @@ public class JwtService {
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+        return claimsResolver.apply(parseClaims(token));
     }
 
     public String generateToken(UserDetails userDetails) {
-        return generateToken(new HashMap<>(), userDetails);
+        Map<String, Object> claims = new HashMap<>();
+        //Carry the id and role so requests can be authenticated without loading the user; they hold
+        //for the token's lifetime (see JwtAuthenticationFilter)
+        if (userDetails instanceof User user) {
+            claims.put(USER_ID_CLAIM, user.getId().toString());
+            claims.put(ROLE_CLAIM, user.getRole().getName().name());
+        }
+        return generateToken(claims, userDetails);
     }
 
     public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
@@ -45,49 +73,37 @@ public class JwtService {
     }
 
     private String buildToken(
-        //Test for CI 2
             Map<String, Object> extraClaims,
             UserDetails userDetails,
             long expiration
     ) {
+        long now = System.currentTimeMillis();
         return Jwts
                 .builder()
-                .setClaims(extraClaims)
-                .setSubject(userDetails.getUsername())
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .claims(extraClaims)
+                .subject(userDetails.getUsername())
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + expiration))
+                .signWith(signingKey, Jwts.SIG.HS256)
                 .compact();
     }
 
+    //Expiry is already enforced by parseClaims, so only the subject needs comparing
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
-    }
-
-    public Date extractExpirationDate(String token) {
-        return extractExpiration(token);
+        return userDetails.getUsername().equals(parseClaims(token).getSubject());
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    //Principal straight from validated claims; empty for tokens issued before the claims existed
+    public Optional<AuthenticatedUser> toPrincipal(Claims claims) {
+        String userId = claims.get(USER_ID_CLAIM, String.class);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        if (userId == null || role == null || claims.getSubject() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new AuthenticatedUser(UUID.fromString(userId), claims.getSubject(), RoleEnum.valueOf(role)));
     }
 
-    private Date extractExpiration(String token) {
+    public Date extractExpirationDate(String token) {
         return extractClaim(token, Claims::getExpiration);
     }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
 }
@@ -1,45 +1,128 @@
 package com.luis.textlift_backend.features.auth.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.luis.textlift_backend.features.auth.domain.RevokedToken;
 import com.luis.textlift_backend.features.auth.repository.RevokedTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.HexFormat;
 
+//Revocation checks are answered from an in-memory set of token hashes, so the JWT filter no
+//longer hits Postgres on every request. The set is loaded at startup, updated locally on logout,
+//and synced from the revoked_token table by polling so logouts on other nodes are seen too.
 @Service
 public class TokenService {
+    private static final Logger LOG = LoggerFactory.getLogger(TokenService.class);
+
     private final RevokedTokenRepository revokedTokenRepository;
     private final JwtService jwtService;
+    private final Duration syncOverlap;
+
+    //token hash -> token expiry; entries drop out of the cache when the token would have expired anyway
+    private final Cache<String, Instant> revoked = Caffeine.newBuilder()
+            .expireAfter(new Expiry<String, Instant>() {
+                @Override
+                public long expireAfterCreate(String key, Instant expiresAt, long currentTime) {
+                    return Math.max(0, Duration.between(Instant.now(), expiresAt).toNanos());
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Instant expiresAt, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, expiresAt, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Instant expiresAt, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    private volatile boolean loaded = false;
+    private volatile Instant lastSync = Instant.EPOCH;
 
-    public TokenService(RevokedTokenRepository revokedTokenRepository, JwtService jwtService) {
+    public TokenService(RevokedTokenRepository revokedTokenRepository, JwtService jwtService,
+                        @Value("${textlift.auth.revocation-sync-overlap:PT30S}") Duration syncOverlap) {
         this.revokedTokenRepository = revokedTokenRepository;
         this.jwtService = jwtService;
+        this.syncOverlap = syncOverlap;
     }
 
-    @Transactional
     public boolean isTokenRevoked(String token) {
-        cleanupExpiredTokens();
-        return revokedTokenRepository.existsByToken(token);
+        //Until the startup load has finished, fall back to the table so no revocation is missed
+        if (!loaded) {
+            return revokedTokenRepository.existsByToken(token);
+        }
+        return revoked.getIfPresent(hash(token)) != null;
     }
 
     @Transactional
     public void revokeToken(String token) {
-        cleanupExpiredTokens();
+        Instant expiresAt = jwtService.extractExpirationDate(token).toInstant();
+        revoked.put(hash(token), expiresAt);
         if (revokedTokenRepository.existsByToken(token)) {
             return;
         }
 
         RevokedToken revokedToken = new RevokedToken();
         revokedToken.setToken(token);
-        revokedToken.setExpiresAt(jwtService.extractExpirationDate(token).toInstant());
+        revokedToken.setExpiresAt(expiresAt);
         revokedToken.setRevokedAt(Instant.now());
         revokedTokenRepository.save(revokedToken);
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    protected void cleanupExpiredTokens() {
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadRevokedTokens() {
+        Instant now = Instant.now();
+        revokedTokenRepository.findByExpiresAtAfter(now).forEach(this::remember);
+        lastSync = now;
+        loaded = true;
+        LOG.info("Loaded {} revoked tokens", revoked.estimatedSize());
+    }
+
+    //Picks up logouts from other nodes. The overlap re-reads a small window to tolerate clock
+    //skew between nodes and transactions that committed after our previous poll started.
+    @Scheduled(fixedDelayString = "${textlift.auth.revocation-sync-interval-ms:5000}")
+    @Transactional(readOnly = true)
+    public void syncRevokedTokens() {
+        if (!loaded) return;
+        Instant now = Instant.now();
+        revokedTokenRepository.findByRevokedAtAfter(lastSync.minus(syncOverlap)).forEach(this::remember);
+        lastSync = now;
+    }
+
+    //Expired revocations are useless (the JWT itself is rejected), so prune them off the request path
+    @Scheduled(fixedDelayString = "${textlift.auth.revocation-cleanup-interval-ms:600000}")
+    @Transactional
+    public void cleanupExpiredTokens() {
         revokedTokenRepository.deleteByExpiresAtBefore(Instant.now());
     }
+
+    private void remember(RevokedToken token) {
+        revoked.put(hash(token.getToken()), token.getExpiresAt());
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
 }
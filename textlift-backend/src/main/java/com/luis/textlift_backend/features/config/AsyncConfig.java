@@ -1,22 +1,117 @@
 package com.luis.textlift_backend.features.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
 public class AsyncConfig {
-    @Bean(name="pipeLineExecutor")
-    public Executor pipelineExecutor(){
+    //Pipeline stages run on separate executors (bulkheads), so a burst of long annotation jobs
+    //cannot take the threads that quick identification or scan jobs need. The worker never leases
+    //more jobs for a stage than its concurrency, so every leased job gets a thread right away.
+    //Jobs mostly wait on PDF I/O, Google Books, VirusTotal and Ollama, so with virtual threads
+    //(spring.threads.virtual.enabled) a waiting job no longer holds a platform thread.
+    @Bean(name="extractStageExecutor")
+    public Executor extractStageExecutor(
+            @Value("${textlift.pipeline.stage.extract.concurrency:4}") int concurrency,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads){
+        return stageExecutor("textlift-extract-stage-", concurrency, virtualThreads);
+    }
+
+    @Bean(name="identifyStageExecutor")
+    public Executor identifyStageExecutor(
+            @Value("${textlift.pipeline.stage.identify.concurrency:4}") int concurrency,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads){
+        return stageExecutor("textlift-identify-stage-", concurrency, virtualThreads);
+    }
+
+    @Bean(name="annotateStageExecutor")
+    public Executor annotateStageExecutor(
+            @Value("${textlift.pipeline.stage.annotate.concurrency:4}") int concurrency,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads){
+        return stageExecutor("textlift-annotate-stage-", concurrency, virtualThreads);
+    }
+
+    @Bean(name="scanStageExecutor")
+    public Executor scanStageExecutor(
+            @Value("${textlift.pipeline.stage.scan.concurrency:2}") int concurrency,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads){
+        return stageExecutor("textlift-scan-stage-", concurrency, virtualThreads);
+    }
+
+    //CPU-bound PDF text stripping shards (see PdfTextExtractor). When every worker is busy the
+    //submitting pipeline thread strips the shard itself instead of queueing without bound.
+    @Bean(name="extractionExecutor")
+    public Executor extractionExecutor(
+            @Value("${textlift.extraction.parallel.workers:0}") int workers){
+        int size = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
         ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
-        ex.setCorePoolSize(4);
-        ex.setMaxPoolSize(8);
-        ex.setQueueCapacity(200);
-        ex.setThreadNamePrefix("textlift-pipeline-");
+        ex.setCorePoolSize(size);
+        ex.setMaxPoolSize(size);
+        ex.setQueueCapacity(size * 4);
+        ex.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        ex.setThreadNamePrefix("textlift-extract-");
+        return ex;
+    }
+
+    //Outbound LLM chunk calls. The pool size is the node-wide cap on concurrent requests to the
+    //model host (textlift.annotation.node-max-in-flight); AnnotationService separately caps how many
+    //chunks one book has in flight. When every slot is busy the submitter waits for one to free
+    //instead of making the call itself, so the node cap holds. In virtual-thread mode the same cap
+    //is a concurrency limit, which also blocks submitters.
+    @Bean(name="annotationExecutor")
+    public Executor annotationExecutor(
+            @Value("${textlift.annotation.node-max-in-flight:${textlift.annotation.max-in-flight:4}}") int maxInFlight,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads){
+        if (virtualThreads) {
+            return virtualExecutor("textlift-annotate-", maxInFlight);
+        }
+        ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
+        ex.setCorePoolSize(maxInFlight);
+        ex.setMaxPoolSize(maxInFlight);
+        //No queue: a chunk is handed straight to an idle thread, or waits in the rejection handler
+        ex.setQueueCapacity(0);
+        ex.setRejectedExecutionHandler((task, pool) -> {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Annotation executor is shut down");
+            }
+            try {
+                pool.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted waiting for an annotation slot", e);
+            }
+        });
+        ex.setThreadNamePrefix("textlift-annotate-");
+        return ex;
+    }
+
+    private static Executor stageExecutor(String prefix, int concurrency, boolean virtualThreads){
+        if (virtualThreads) {
+            return virtualExecutor(prefix, concurrency);
+        }
+        ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
+        ex.setCorePoolSize(concurrency);
+        ex.setMaxPoolSize(concurrency);
+        ex.setQueueCapacity(concurrency);
+        ex.setThreadNamePrefix(prefix);
+        return ex;
+    }
+
+    //One virtual thread per task, at most `limit` running at once. The extraction pool stays on
+    //platform threads because that work is CPU-bound (see PdfTextExtractor's CPU permits).
+    private static SimpleAsyncTaskExecutor virtualExecutor(String prefix, int limit){
+        SimpleAsyncTaskExecutor ex = new SimpleAsyncTaskExecutor(prefix);
+        ex.setVirtualThreads(true);
+        ex.setConcurrencyLimit(limit);
         return ex;
     }
 }
@@ -22,10 +22,14 @@ public class CorsConfig {
         configuration.setAllowedHeaders(List.of(
                 "Authorization",
                 "Content-Type",
-                "X-XSRF-TOKEN"
+                "X-XSRF-TOKEN",
+                "Upload-Offset",
+                "Upload-Checksum"
         ));
         configuration.setExposedHeaders(List.of(
-                "Set-Cookie"
+                "Set-Cookie",
+                "X-Next-Cursor",
+                "Retry-After"
         ));
         configuration.setAllowCredentials(true);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.AccountStatusException;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -20,14 +21,15 @@ public class GlobalExceptionHandler {
     private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
     @ExceptionHandler(ResponseStatusException.class)
-    public ProblemDetail handleResponseStatus(ResponseStatusException ex, HttpServletRequest req) {
+    public ResponseEntity<ProblemDetail> handleResponseStatus(ResponseStatusException ex, HttpServletRequest req) {
         ProblemDetail pd = ProblemDetail.forStatusAndDetail(
                 ex.getStatusCode(),
                 ex.getReason() != null ? ex.getReason() : "Request failed"
         );
         pd.setProperty("path", req.getRequestURI());
         log.error("Unhandled error path={} user={}", req.getRequestURI(), req.getRemoteUser(), ex);
-        return pd;
+        //Keep headers the exception carries (e.g. Retry-After on a 503)
+        return ResponseEntity.status(ex.getStatusCode()).headers(ex.getHeaders()).body(pd);
     }
     @ExceptionHandler(DataIntegrityViolationException.class)
     public ProblemDetail handleDataIntegrity(DataIntegrityViolationException ex, HttpServletRequest req) {
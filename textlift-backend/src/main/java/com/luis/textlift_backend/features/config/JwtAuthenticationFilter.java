@@ -1,7 +1,12 @@
 package com.luis.textlift_backend.features.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.luis.textlift_backend.features.auth.domain.AuthenticatedUser;
+import com.luis.textlift_backend.features.auth.domain.User;
 import com.luis.textlift_backend.features.auth.service.JwtService;
 import com.luis.textlift_backend.features.auth.service.TokenService;
+import io.jsonwebtoken.Claims;
 import io.micrometer.common.lang.NonNull;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -18,6 +23,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.servlet.HandlerExceptionResolver;
 
 import java.io.IOException;
+import java.time.Duration;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -27,6 +33,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
     private final TokenService tokenService;
+    private final Cache<String, AuthenticatedUser> principalCache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(60))
+            .maximumSize(10_000)
+            .build();
 
     public JwtAuthenticationFilter(
             JwtService jwtService,
@@ -53,22 +63,27 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 filterChain.doFilter(request, response);
                 return;
             }
-            final String userEmail = jwtService.extractUsername(jwt);
-
             //Check if the security context is already authenticated
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
-            //If we can't find the user AND they are not authenticated, we want to load the user from the DB
-            if (userEmail != null && authentication == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+            if (authentication == null) {
+                //Parse once: this verifies the signature and expiry. New tokens carry the user id and
+                //role as claims; older ones fall back to a short-lived cache in front of the user lookup.
+                //The user row is not read per request, so until the token expires (1h) a deleted or
+                //disabled account stays signed in and a role change is not seen. The app has no
+                //disable/delete flow today; one that adds it must revoke the user's tokens, and an
+                //account cut off by hand in the database is only locked out at token expiry (or by
+                //rotating JWT_SECRET, which signs everyone out).
+                Claims claims = jwtService.parseClaims(jwt);
+                AuthenticatedUser principal = jwtService.toPrincipal(claims)
+                        .orElseGet(() -> principalCache.get(claims.getSubject(), this::loadPrincipal));
 
-                //validate their token
-                if (jwtService.isTokenValid(jwt, userDetails) && !tokenService.isTokenRevoked(jwt)) {
+                if (!tokenService.isTokenRevoked(jwt)) {
                     //And if valid, build an authentication object
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
+                            principal,
                             null,
-                            userDetails.getAuthorities()
+                            principal.authorities()
                     );
 
                     //Attach optional request details like IP, or session if any
@@ -85,6 +100,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
     }
 
+    private AuthenticatedUser loadPrincipal(String email) {
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(email);
+        return AuthenticatedUser.from((User) userDetails);
+    }
+
     private String resolveToken(HttpServletRequest request) {
         if (request.getCookies() != null) {
             for (jakarta.servlet.http.Cookie cookie : request.getCookies()) {
@@ -0,0 +1,10 @@
+package com.luis.textlift_backend.features.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+//Background pollers: pipeline job worker, revoked-token sync and other periodic cleanup
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,6 +1,7 @@
 package com.luis.textlift_backend.features.config;
 
 import com.luis.textlift_backend.features.config.ratelimit.RateLimitingFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -42,6 +43,9 @@ public class SecurityConfiguration {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource))
                 .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        //Async re-dispatches of an already authorized request (SSE status streams) carry no token
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         //Public endpoints
                         .requestMatchers("/api/v1/auth/login", "/api/v1/auth/signup").permitAll()
 
@@ -0,0 +1,76 @@
+package com.luis.textlift_backend.features.config.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+//Custom meters for the document pipeline, on /actuator/metrics and /actuator/prometheus.
+//textlift.stage{stage,outcome} times every stage and outbound call with a percentile histogram,
+//so latency can be broken down per stage and per result (success, retry, not_found, ...).
+@Component
+public class PipelineMetrics {
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_ERROR = "error";
+
+    private final MeterRegistry registry;
+    private final Counter pagesExtracted;
+    private final Counter charsExtracted;
+    private final Counter chunksSent;
+    private final Counter chunksCached;
+    private final Counter notesParsed;
+    private final Counter parseFailures;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.pagesExtracted = Counter.builder("textlift.extraction.pages")
+                .description("PDF pages stripped to text").register(registry);
+        this.charsExtracted = Counter.builder("textlift.extraction.chars")
+                .description("Characters of text extracted from PDFs").register(registry);
+        this.chunksSent = Counter.builder("textlift.annotation.chunks.sent")
+                .description("Text chunks sent to the LLM").register(registry);
+        this.chunksCached = Counter.builder("textlift.annotation.chunks.cached")
+                .description("Text chunks answered from annotation_chunk_cache").register(registry);
+        this.notesParsed = Counter.builder("textlift.annotation.notes.parsed")
+                .description("Annotation notes parsed from model output").register(registry);
+        this.parseFailures = Counter.builder("textlift.annotation.parse.failures")
+                .description("Model responses that were empty or not valid JSON").register(registry);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void stop(Timer.Sample sample, String stage, String outcome) {
+        sample.stop(Timer.builder("textlift.stage")
+                .description("Time spent per pipeline stage and outbound call")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void pagesExtracted(int pages) {
+        pagesExtracted.increment(pages);
+    }
+
+    public void charsExtracted(long chars) {
+        charsExtracted.increment(chars);
+    }
+
+    public void chunkSent() {
+        chunksSent.increment();
+    }
+
+    public void chunkCached() {
+        chunksCached.increment();
+    }
+
+    public void notesParsed(int notes) {
+        notesParsed.increment(notes);
+    }
+
+    public void parseFailure() {
+        parseFailures.increment();
+    }
+}
@@ -5,6 +5,7 @@ import com.github.benmanes.caffeine.cache.LoadingCache;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Refill;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -12,6 +13,19 @@ import java.time.Duration;
 
 @Configuration
 public class RateLimitingConfig {
+    //Buckets of chunk upload requests are keyed with this prefix (see RateLimitingFilter)
+    static final String CHUNK_KEY_PREFIX = "chunks:";
+
+    private final long requestsPerMinute;
+    private final long chunkRequestsPerMinute;
+
+    //Raised only for load tests, which send everything from one address
+    public RateLimitingConfig(@Value("${textlift.ratelimit.requests-per-minute:10}") long requestsPerMinute,
+                              @Value("${textlift.ratelimit.chunk-requests-per-minute:120}") long chunkRequestsPerMinute) {
+        this.requestsPerMinute = requestsPerMinute;
+        this.chunkRequestsPerMinute = chunkRequestsPerMinute;
+    }
+
     //Rather than just storing IP addresses indefinitely, we can use Caffeine to
     //cache them, allowing for more dynamic rate limiting.
     @Bean
@@ -23,7 +37,8 @@ public class RateLimitingConfig {
     }
 
     private Bucket newBucket(String key) {
-        Bandwidth limit = Bandwidth.classic(10, Refill.greedy(10, Duration.ofMinutes(1)));
+        long perMinute = key.startsWith(CHUNK_KEY_PREFIX) ? chunkRequestsPerMinute : requestsPerMinute;
+        Bandwidth limit = Bandwidth.classic(perMinute, Refill.greedy(perMinute, Duration.ofMinutes(1)));
         return Bucket.builder().addLimit(limit).build();
     }
 }
@@ -7,11 +7,16 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 @Component
 public class RateLimitingFilter extends OncePerRequestFilter {
+    //A resumable upload is one request per chunk, far more than the general limit allows
+    private static final String CHUNK_PATH = "/api/v1/upload/*/chunks/*";
+    private static final AntPathMatcher PATHS = new AntPathMatcher();
+
     private final LoadingCache<String, Bucket> buckets;
 
     public RateLimitingFilter(LoadingCache<String, Bucket> buckets) {
@@ -23,6 +28,9 @@ public class RateLimitingFilter extends OncePerRequestFilter {
             throws ServletException,IOException {
         // Use the direct remote address to avoid header spoofing
         String key = clientKey(request);
+        if (PATHS.match(CHUNK_PATH, request.getRequestURI())) {
+            key = RateLimitingConfig.CHUNK_KEY_PREFIX + key;
+        }
         Bucket bucket = buckets.get(key);
         if(bucket.tryConsume(1)){
             filterChain.doFilter(request, response);
@@ -1,10 +1,13 @@
 package com.luis.textlift_backend.features.document.api;
 
+import com.luis.textlift_backend.features.document.api.dto.GetUserUploadsPageDto;
 import com.luis.textlift_backend.features.document.api.dto.GetUserUploadsResponseDto;
 import com.luis.textlift_backend.features.document.service.DocumentService;
 import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.UUID;
@@ -12,16 +15,34 @@ import java.util.UUID;
 @RestController
 @RequestMapping("/api/v1/documents")
 public class DocumentController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     private final DocumentService documentService;
 
     public DocumentController(DocumentService documentService) {
         this.documentService = documentService;
     }
 
+    //Newest first. Without ?limit= or ?cursor= every upload comes back, as before paging existed.
+    //With either, the body stays a plain list; when there are more pages the cursor for the
+    //next one comes back in X-Next-Cursor and is passed as ?cursor=
     @GetMapping("/uploads")
-    public ResponseEntity<List<GetUserUploadsResponseDto>> getUserUploadedDocuments(){
-        List<GetUserUploadsResponseDto> getUserUploadsResponseDto = documentService.getUserUploadedDocuments();
-        return ResponseEntity.ok(getUserUploadsResponseDto);
+    public ResponseEntity<List<GetUserUploadsResponseDto>> getUserUploadedDocuments(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor
+    ){
+        GetUserUploadsPageDto page = documentService.getUserUploadedDocuments(limit, cursor);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.uploads());
+    }
+
+    //Server-Sent Events: a "status" event now and on every pipeline transition, closed once the
+    //document reaches a terminal status. Replaces polling for documents that are still processing
+    @GetMapping(value = "/{documentId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDocumentStatus(@PathVariable UUID documentId){
+        return documentService.streamStatus(documentId);
     }
 
     @DeleteMapping("/uploads/{documentId}")
@@ -0,0 +1,12 @@
+package com.luis.textlift_backend.features.document.api.dto;
+
+import com.luis.textlift_backend.features.document.domain.DocumentStatus;
+
+import java.util.UUID;
+
+public record DocumentStatusEventDto(
+        UUID documentId,
+        DocumentStatus status,
+        //true once the document will not change status again and the stream is closed
+        boolean terminal
+){}
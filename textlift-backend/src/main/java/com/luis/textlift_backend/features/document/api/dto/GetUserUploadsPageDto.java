@@ -0,0 +1,9 @@
+package com.luis.textlift_backend.features.document.api.dto;
+
+import java.util.List;
+
+public record GetUserUploadsPageDto(
+        List<GetUserUploadsResponseDto> uploads,
+        //null on the last page
+        String nextCursor
+){}
@@ -2,11 +2,13 @@ package com.luis.textlift_backend.features.document.api.dto;
 
 import com.luis.textlift_backend.features.document.domain.DocumentStatus;
 
+import java.time.Instant;
 import java.util.UUID;
 
 public record GetUserUploadsResponseDto (
 
         String textBookTitle,
         DocumentStatus documentStatus,
-        UUID documentId
+        UUID documentId,
+        Instant createdAt
 ){}
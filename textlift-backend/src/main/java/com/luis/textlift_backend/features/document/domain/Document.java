@@ -3,8 +3,8 @@ package com.luis.textlift_backend.features.document.domain;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.luis.textlift_backend.features.textbook.domain.Textbook;
 import jakarta.persistence.*;
-import org.springframework.data.annotation.CreatedDate;
-import org.springframework.data.annotation.LastModifiedDate;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.Instant;
 import java.util.UUID;
@@ -29,8 +29,9 @@ public class Document {
     @Enumerated(EnumType.STRING)
     private DocumentStatus status;
 
+    //BlobStore key of the uploaded PDF, or of the extracted text once textReady
     @Column(nullable = false)
-    private String filePath;
+    private String blobKey;
 
     @Column(nullable = false)
     private String originalFileName;
@@ -38,14 +39,18 @@ public class Document {
     @Column
     private String hash;
 
+    //True once blobKey points at the fully extracted text instead of the uploaded PDF
+    @Column(nullable = false)
+    private boolean textReady;
 
 
-    @Column
-    @CreatedDate
+
+    @Column(updatable = false)
+    @CreationTimestamp
     private Instant createdAt;
 
     @Column
-    @LastModifiedDate
+    @UpdateTimestamp
     private Instant updatedAt;
 
     public Textbook getTextbook() {
@@ -64,12 +69,12 @@ public class Document {
         this.status = status;
     }
 
-    public String getFilePath() {
-        return this.filePath;
+    public String getBlobKey() {
+        return this.blobKey;
     }
 
-    public void setFilePath(String filePath) {
-        this.filePath = filePath;
+    public void setBlobKey(String blobKey) {
+        this.blobKey = blobKey;
     }
 
     public String getOriginalFileName() {
@@ -91,4 +96,16 @@ public class Document {
     public void setHash(String hash) {
         this.hash = hash;
     }
+
+    public boolean isTextReady() {
+        return textReady;
+    }
+
+    public void setTextReady(boolean textReady) {
+        this.textReady = textReady;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
 }
\ No newline at end of file
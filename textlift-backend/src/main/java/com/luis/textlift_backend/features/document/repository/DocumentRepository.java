@@ -1,8 +1,14 @@
 package com.luis.textlift_backend.features.document.repository;
 
 import com.luis.textlift_backend.features.document.domain.Document;
+import com.luis.textlift_backend.features.document.domain.DocumentStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -14,4 +20,38 @@ public interface DocumentRepository extends JpaRepository<Document, UUID> {
     Optional<Document> getDocumentByHash(String hash);
 
     Optional<Document> findById(UUID id);
+
+    //Other uploads of a textbook waiting on the one document its annotation is generated from
+    List<Document> findByTextbook_IdAndStatus(UUID textbookId, DocumentStatus status);
+
+    //Polled during text extraction; just the column, not the entity
+    @Query("select d.status from Document d where d.id = :id")
+    Optional<DocumentStatus> findStatusById(UUID id);
+
+    //Identification and text extraction finish independently; whichever commits last starts annotation
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select d from Document d where d.id = :id")
+    Optional<Document> lockById(UUID id);
+
+    //Uploads dashboard in one round-trip: the user's upload sessions are a semi-join (a user can
+    //have several sessions for the same hash) and the textbook comes along in the same row.
+    //Newest first; the next page starts strictly after the (createdAt, id) of the last row.
+    @Query("""
+            select new com.luis.textlift_backend.features.document.repository.UserUploadRow(
+                d.id, d.status, d.createdAt, t.id, t.textbookName)
+            from Document d left join d.textbook t
+            where exists (select 1 from UploadSession us where us.user.id = :userId and us.hash = d.hash)
+            order by d.createdAt desc, d.id desc
+            """)
+    List<UserUploadRow> findUserUploads(UUID userId, Limit limit);
+
+    @Query("""
+            select new com.luis.textlift_backend.features.document.repository.UserUploadRow(
+                d.id, d.status, d.createdAt, t.id, t.textbookName)
+            from Document d left join d.textbook t
+            where exists (select 1 from UploadSession us where us.user.id = :userId and us.hash = d.hash)
+              and (d.createdAt < :createdAt or (d.createdAt = :createdAt and d.id < :documentId))
+            order by d.createdAt desc, d.id desc
+            """)
+    List<UserUploadRow> findUserUploadsAfter(UUID userId, Instant createdAt, UUID documentId, Limit limit);
 }
@@ -0,0 +1,15 @@
+package com.luis.textlift_backend.features.document.repository;
+
+import com.luis.textlift_backend.features.document.domain.DocumentStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+//Flat row for the uploads dashboard: document joined with its (optional) textbook
+public record UserUploadRow(
+        UUID documentId,
+        DocumentStatus status,
+        Instant createdAt,
+        UUID textbookId,
+        String textbookName
+) {}
@@ -1,57 +1,94 @@
 package com.luis.textlift_backend.features.document.service;
 
-import com.luis.textlift_backend.features.auth.domain.User;
-import com.luis.textlift_backend.features.auth.repository.UserRepository;
+import com.luis.textlift_backend.features.auth.service.CurrentUser;
+import com.luis.textlift_backend.features.document.api.dto.GetUserUploadsPageDto;
 import com.luis.textlift_backend.features.document.api.dto.GetUserUploadsResponseDto;
 import com.luis.textlift_backend.features.document.domain.Document;
 import com.luis.textlift_backend.features.document.domain.DocumentStatus;
 import com.luis.textlift_backend.features.document.domain.ExtractedMetadata;
 import com.luis.textlift_backend.features.document.repository.DocumentRepository;
+import com.luis.textlift_backend.features.document.repository.UserUploadRow;
 import com.luis.textlift_backend.features.document.service.events.DocumentReadyForIdEvent;
-import com.luis.textlift_backend.features.upload.domain.UploadSession;
+import com.luis.textlift_backend.features.document.service.events.DocumentStatusChangedEvent;
+import com.luis.textlift_backend.features.storage.service.BlobKeys;
+import com.luis.textlift_backend.features.storage.service.BlobStore;
+import com.luis.textlift_backend.features.storage.service.CompressedText;
+import com.luis.textlift_backend.features.storage.service.TextBlockIndex;
+import com.luis.textlift_backend.features.storage.service.TextPageIndex;
+import com.luis.textlift_backend.features.textbook.service.events.TextbookIdentifiedEvent;
 import com.luis.textlift_backend.features.upload.repository.UploadSessionRepository;
 import jakarta.transaction.Transactional;
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import com.luis.textlift_backend.features.config.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.Timer;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
-import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 @Service
 public class DocumentService {
+    private static final int DEFAULT_UPLOADS_PAGE = 100;
+    private static final int MAX_UPLOADS_PAGE = 200;
     private final DocumentRepository documentRepository;
     private final ApplicationEventPublisher events;
-    private final UserRepository userRepository;
     private final UploadSessionRepository uploadSessionRepository;
+    private final DocumentStatusStreams statusStreams;
+    private final PdfTextExtractor pdfTextExtractor;
+    private final TransactionTemplate transactionTemplate;
+    private final PipelineMetrics metrics;
+    private final BlobStore blobStore;
+    //Node-local scratch space for text being extracted before it is stored as a blob
+    private final Path workDir;
+    private final boolean earlyIdentification;
+    private final int frontMatterPages;
+    private final int backMatterPages;
 
-    public DocumentService(DocumentRepository documentRepository, ApplicationEventPublisher events, UserRepository userRepository, UploadSessionRepository uploadSessionRepository) {
+    public DocumentService(DocumentRepository documentRepository, ApplicationEventPublisher events, UploadSessionRepository uploadSessionRepository, PdfTextExtractor pdfTextExtractor, DocumentStatusStreams statusStreams,
+                           TransactionTemplate transactionTemplate,
+                           PipelineMetrics metrics,
+                           BlobStore blobStore,
+                           @Value("${textlift.storage.work-dir:/var/lib/textlift/work}") Path workDir,
+                           @Value("${textlift.identification.early.enabled:true}") boolean earlyIdentification,
+                           @Value("${textlift.identification.early.front-pages:15}") int frontMatterPages,
+                           @Value("${textlift.identification.early.back-pages:5}") int backMatterPages) {
         this.documentRepository = documentRepository;
         this.events = events;
-        this.userRepository = userRepository;
         this.uploadSessionRepository = uploadSessionRepository;
+        this.statusStreams = statusStreams;
+        this.pdfTextExtractor = pdfTextExtractor;
+        this.transactionTemplate = transactionTemplate;
+        this.metrics = metrics;
+        this.blobStore = blobStore;
+        this.workDir = workDir.resolve("extract");
+        this.earlyIdentification = earlyIdentification;
+        this.frontMatterPages = frontMatterPages;
+        this.backMatterPages = backMatterPages;
     }
 
 
     //We want an async function that upon listening for an event,
     //starts the process of extracting metadata/text.
-    @Transactional
+    //Not one transaction: the early identification job has to commit before the (long) full
+    //extraction starts so the two can run side by side.
     public void processDocument(UUID documentId){
         //At this point, we should have hash, original filename, and file path to PDF file
         //First, fetch the document obj associated with ID
@@ -62,25 +99,63 @@ public class DocumentService {
                                 "Could not find document!!!"
                         ));
 
-        //Ensure document in ready mode
-        if(docObj.getStatus() != DocumentStatus.READY){
+        //A retry after the text was already stored has nothing left to do
+        if(docObj.isTextReady()){
+            return;
+        }
+        //Ensure document in ready mode (or identifying, when an earlier attempt already started that)
+        if(docObj.getStatus() != DocumentStatus.READY && docObj.getStatus() != DocumentStatus.TEXTBOOK_SCANNING
+                && docObj.getStatus() != DocumentStatus.TEXTBOOK_IDENTIFIED && docObj.getStatus() != DocumentStatus.ANNOTATIONS_READY){
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Document is not ready to process!!!");
         }
 
-        //Now we need to load the doc into memory
-        try (PDDocument pdfFile =
-                     Loader.loadPDF(new RandomAccessReadBufferedFile(docObj.getFilePath()))
+        //Now we need to load the doc into memory (from a local copy when the store is remote)
+        String pdfKey = docObj.getBlobKey();
+        try (BlobStore.LocalFile pdfBlob = blobStore.toLocalFile(pdfKey);
+             PDDocument pdfFile = Loader.loadPDF(new RandomAccessReadBufferedFile(pdfBlob.path().toFile()))
         ) {
-            //Call upon methods to extract the metadata + store the PDF text as a temp .txt file
+            Files.createDirectories(workDir);
+
+            //Call upon methods to extract the metadata + store the PDF text as a .txt blob
             ExtractedMetadata metadata = extractMetadata(pdfFile);
+
+            //Strip just the first/last pages and queue identification now, while the rest is extracted
+            if(earlyIdentification && docObj.getStatus() == DocumentStatus.READY){
+                Path frontMatter = workDir.resolve(documentId + ".front.txt");
+                Path compressed = workDir.resolve(documentId + ".front.txt.gz");
+                try {
+                    pdfTextExtractor.extractFrontMatter(pdfFile, frontMatter, frontMatterPages, backMatterPages);
+                    CompressedText.compress(frontMatter, compressed);
+                    blobStore.put(BlobKeys.frontMatter(docObj.getHash()), compressed);
+                } finally {
+                    Files.deleteIfExists(frontMatter);
+                    Files.deleteIfExists(compressed);
+                }
+                startEarlyIdentification(documentId, metadata);
+            }
+
             //After extracting this data, use textbook repo to create a textbook and fill fields.
-            String textFilePath = extractText(pdfFile, documentId, docObj.getFilePath());
+            String textKey;
+            try {
+                textKey = extractText(pdfFile, documentId, pdfBlob.path(), docObj.getHash());
+            } catch (PdfTextExtractor.ExtractionCancelledException e) {
+                //Early identification found an already annotated book: the text is never read
+                blobStore.delete(pdfKey);
+                return;
+            }
 
-            //Update document obj's filepath to now reflect the .txt file
-            docObj.setFilePath(textFilePath);
-            documentRepository.save(docObj);
+            //Update document obj's blob key to now reflect the .txt blob
+            DocumentStatus status = markTextReady(documentId, textKey, metadata);
 
-            events.publishEvent(new DocumentReadyForIdEvent(metadata, documentId));
+            //After storing the text, we want to delete the PDF since we don't need it anymore
+            blobStore.delete(pdfKey);
+
+            //Identified as an already annotated book while we were extracting; nobody will read the text
+            if(status == DocumentStatus.ANNOTATIONS_READY){
+                blobStore.delete(textKey);
+                blobStore.delete(BlobKeys.textIndex(docObj.getHash()));
+                blobStore.delete(BlobKeys.textPages(docObj.getHash()));
+            }
         } catch (IOException e) {
             throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR,
@@ -90,100 +165,166 @@ public class DocumentService {
         }
     }
 
+    private void startEarlyIdentification(UUID documentId, ExtractedMetadata metadata) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            Document doc = documentRepository.lockById(documentId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find document!!!"));
+            doc.setStatus(DocumentStatus.TEXTBOOK_SCANNING);
+            events.publishEvent(new DocumentStatusChangedEvent(documentId, DocumentStatus.TEXTBOOK_SCANNING));
+            events.publishEvent(new DocumentReadyForIdEvent(metadata, documentId));
+        });
+    }
+
+    //Runs under the document row lock, like the end of identification, so exactly one of the two
+    //sees the other finished and queues annotation
+    private DocumentStatus markTextReady(UUID documentId, String textKey, ExtractedMetadata metadata) {
+        return transactionTemplate.execute(tx -> {
+            Document doc = documentRepository.lockById(documentId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find document!!!"));
+            doc.setBlobKey(textKey);
+            doc.setTextReady(true);
+
+            if(doc.getStatus() == DocumentStatus.READY){
+                //Early identification disabled: identify from the full text as before
+                events.publishEvent(new DocumentReadyForIdEvent(metadata, documentId));
+            } else if(doc.getStatus() == DocumentStatus.TEXTBOOK_SCANNING && doc.getTextbook() == null){
+                //Early identification found no ISBN in the front matter (or is still running; the
+                //later of the two jobs to link a textbook backs off): search the full text
+                events.publishEvent(new DocumentReadyForIdEvent(metadata, documentId));
+            } else if(doc.getStatus() == DocumentStatus.TEXTBOOK_IDENTIFIED && doc.getTextbook() != null){
+                events.publishEvent(new TextbookIdentifiedEvent(doc.getTextbook().getId(), documentId));
+            }
+            return doc.getStatus();
+        });
+    }
+
     public ExtractedMetadata extractMetadata(PDDocument pdf){
         PDDocumentInformation pdd = pdf.getDocumentInformation();
         return new ExtractedMetadata(pdd.getAuthor(), pdd.getTitle(), pdd.getSubject(), pdd.getKeywords());
     }
 
-    // Returns filepath of where text was written
-    public String extractText(PDDocument pdf, UUID documentId, String oldFilePath) throws IOException {
-        //New file path where PDF text persists
-        Path newFile = Paths.get("/tmp/textlift/uploads/" + documentId + ".txt");
-        // Path of a PDF file (deleted after extraction)
-        Path oldFile = Paths.get(oldFilePath);
-
-        // Extract text from PDF
-        PDFTextStripper stripper = new PDFTextStripper();
-        int totalPages = pdf.getNumberOfPages();
-        int window = 20;
-
-        // Buffer and write 20 pages at a time into a text file to reduce memory usage
-        try (BufferedWriter writer = Files.newBufferedWriter(newFile, StandardCharsets.UTF_8)) {
-            for (int start = 1; start <= totalPages; start += window) {
-                int end = Math.min(start + window - 1, totalPages);
-                stripper.setStartPage(start);
-                stripper.setEndPage(end);
-                String chunk = stripper.getText(pdf);
-                writer.write(chunk);
+    // Returns the blob key the text was stored under.
+    // Stops early (ExtractionCancelledException) once the document's book is found to be annotated already.
+    public String extractText(PDDocument pdf, UUID documentId, Path source, String hash) throws IOException {
+        //Scratch files for the text and its compressed form; they are stored as blobs and removed
+        Path newFile = workDir.resolve(documentId + ".txt");
+        Path compressed = workDir.resolve(documentId + ".txt.gz");
+        Path indexFile = workDir.resolve(documentId + ".txt.idx");
+        Path pagesFile = workDir.resolve(documentId + ".pages.idx");
+
+        try {
+            // Extract text from PDF, sharded across the extraction pool for large books
+            Timer.Sample sample = metrics.start();
+            TextPageIndex pages;
+            try {
+                pages = pdfTextExtractor.extract(pdf, source, newFile, () -> documentRepository.findStatusById(documentId)
+                        .filter(status -> status == DocumentStatus.ANNOTATIONS_READY).isPresent());
+                metrics.stop(sample, "extract_text", PipelineMetrics.OUTCOME_SUCCESS);
+                metrics.pagesExtracted(pages.pageCount());
+                metrics.charsExtracted(pages.totalChars());
+            } catch (PdfTextExtractor.ExtractionCancelledException e) {
+                metrics.stop(sample, "extract_text", "cancelled");
+                throw e;
+            } catch (IOException e) {
+                metrics.stop(sample, "extract_text", PipelineMetrics.OUTCOME_ERROR);
+                //Keep the PDF so the pipeline job can retry the extraction
+                throw new ResponseStatusException(
+                        HttpStatus.INTERNAL_SERVER_ERROR,
+                        "Unable to extract text from file",
+                        e
+                );
             }
-            return newFile.toString();
-        } catch (IOException e) {
-            throw new ResponseStatusException(
-                    HttpStatus.INTERNAL_SERVER_ERROR,
-                    "Unable to extract text from file",
-                    e
-            );
-        }
-        finally {
-            //After writing text to file, we want to delete the PDF file since we don't need it anymore
-            Files.deleteIfExists(oldFile);
+
+            //Indexes first, so whoever sees the text blob can also seek in it
+            TextBlockIndex index = CompressedText.compress(newFile, compressed);
+            try (OutputStream out = Files.newOutputStream(indexFile)) {
+                index.writeTo(out);
+            }
+            blobStore.put(BlobKeys.textIndex(hash), indexFile);
+            try (OutputStream out = Files.newOutputStream(pagesFile)) {
+                pages.writeTo(out);
+            }
+            blobStore.put(BlobKeys.textPages(hash), pagesFile);
+
+            String textKey = BlobKeys.text(hash);
+            blobStore.put(textKey, compressed);
+            return textKey;
+        } finally {
+            Files.deleteIfExists(newFile);
+            Files.deleteIfExists(compressed);
+            Files.deleteIfExists(indexFile);
+            Files.deleteIfExists(pagesFile);
         }
     }
 
-    public List<GetUserUploadsResponseDto> getUserUploadedDocuments(){
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() ->
-                        new ResponseStatusException(
-                                HttpStatus.NOT_FOUND,
-                                "Could not find user!!!"
-                        ));
+    //One keyset-paginated query for the dashboard instead of a query per hash plus a lazy textbook load per document
+    //limit null and no cursor: the whole list in one response (clients that predate paging)
+    public GetUserUploadsPageDto getUserUploadedDocuments(Integer limit, String cursor){
+        UUID userId = CurrentUser.id();
+        boolean paged = limit != null || (cursor != null && !cursor.isBlank());
+        int pageSize = Math.min(Math.max(limit == null ? DEFAULT_UPLOADS_PAGE : limit, 1), MAX_UPLOADS_PAGE);
 
-        Optional<List<String>> hashes = uploadSessionRepository.findHashByUserId(user.getId());
-        if(hashes.isEmpty()){
-            return List.of();
+        List<UserUploadRow> rows;
+        if (!paged) {
+            rows = documentRepository.findUserUploads(userId, Limit.unlimited());
+        } else if (cursor == null || cursor.isBlank()) {
+            rows = documentRepository.findUserUploads(userId, Limit.of(pageSize));
+        } else {
+            UploadsCursor after = UploadsCursor.decode(cursor);
+            rows = documentRepository.findUserUploadsAfter(userId, after.createdAt(), after.documentId(), Limit.of(pageSize));
         }
 
-        //After getting the hashes of the files associted with the user, now we need to get the actual documents
-        List<Document> documents = new ArrayList<>();
-        for(String hash : hashes.get()){
-            List<Document> currHashDocs = documentRepository.getDocumentsByHash(hash);
-            if(!(currHashDocs.isEmpty())){
-                documents.addAll(currHashDocs);
+        List<GetUserUploadsResponseDto> responseDtos = new ArrayList<>(rows.size());
+        for (UserUploadRow row : rows) {
+            if (row.textbookId() == null) {
+                responseDtos.add(new GetUserUploadsResponseDto("UNKNOWN", DocumentStatus.FAILED_TO_IDENTIFY_ISBN, row.documentId(), row.createdAt()));
+            } else {
+                responseDtos.add(new GetUserUploadsResponseDto(row.textbookName(), row.status(), row.documentId(), row.createdAt()));
             }
         }
 
-        List<GetUserUploadsResponseDto> responseDtos = new ArrayList<>();
+        //A full page may have more behind it; hand back where the next one starts
+        String nextCursor = null;
+        if (paged && rows.size() == pageSize) {
+            UserUploadRow last = rows.get(rows.size() - 1);
+            nextCursor = new UploadsCursor(last.createdAt(), last.documentId()).encode();
+        }
+        return new GetUserUploadsPageDto(responseDtos, nextCursor);
+    }
+
+    //Opaque keyset cursor: base64url("<createdAt ISO-8601>|<documentId>")
+    private record UploadsCursor(Instant createdAt, UUID documentId) {
+        String encode() {
+            String raw = createdAt + "|" + documentId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
 
-        for (Document doc : documents) {
+        static UploadsCursor decode(String cursor) {
             try {
-                var tb = doc.getTextbook();
-                if (tb == null) {
-                    responseDtos.add(new GetUserUploadsResponseDto("UNKNOWN", DocumentStatus.FAILED_TO_IDENTIFY_ISBN, doc.getId()));
-                }else{
-                    responseDtos.add(new GetUserUploadsResponseDto(tb.getTextbookName(), doc.getStatus(), doc.getId()));
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.indexOf('|');
+                return new UploadsCursor(Instant.parse(raw.substring(0, sep)), UUID.fromString(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
             }
         }
+    }
 
-        return responseDtos;
+    //Only uploaders of the document (by hash, like every other document access) may watch it
+    public SseEmitter streamStatus(UUID documentId){
+        UUID userId = CurrentUser.id();
 
+        Document document = documentRepository.findById(documentId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find document!!!"));
+        if (!uploadSessionRepository.existsByUser_IdAndHash(userId, document.getHash())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find document!!!");
+        }
+        return statusStreams.subscribe(document.getId(), document.getStatus());
     }
 
     @Transactional
     public void deleteUserDocument(UUID documentId){
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() ->
-                        new ResponseStatusException(
-                                HttpStatus.NOT_FOUND,
-                                "Could not find user!!!"
-                        ));
+        UUID userId = CurrentUser.id();
 
         Document document = documentRepository.findById(documentId)
                 .orElseThrow(() ->
@@ -193,7 +334,7 @@ public class DocumentService {
                         ));
 
         String hash = document.getHash();
-        long deleted = uploadSessionRepository.deleteByUser_IdAndHash(user.getId(), hash);
+        long deleted = uploadSessionRepository.deleteByUser_IdAndHash(userId, hash);
         if (deleted == 0) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found");
         }
@@ -0,0 +1,147 @@
+package com.luis.textlift_backend.features.document.service;
+
+import com.luis.textlift_backend.features.document.api.dto.DocumentStatusEventDto;
+import com.luis.textlift_backend.features.document.domain.Document;
+import com.luis.textlift_backend.features.document.domain.DocumentStatus;
+import com.luis.textlift_backend.features.document.repository.DocumentRepository;
+import com.luis.textlift_backend.features.document.service.events.DocumentStatusChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+//Open Server-Sent Event streams, keyed by document. Status changes made on this node are pushed
+//as soon as their transaction commits; the periodic sweep picks up changes made by pipeline
+//workers on other nodes and doubles as a keepalive that clears out dead connections.
+@Component
+public class DocumentStatusStreams {
+    private static final Logger LOG = LoggerFactory.getLogger(DocumentStatusStreams.class);
+    private static final String STATUS_EVENT = "status";
+    private static final Set<DocumentStatus> TERMINAL = EnumSet.of(
+            DocumentStatus.ANNOTATIONS_READY,
+            DocumentStatus.FAILED_TO_GENERATE,
+            DocumentStatus.FAILED_TO_IDENTIFY_ISBN
+    );
+
+    private final DocumentRepository documentRepository;
+    private final long timeoutMs;
+    private final Map<UUID, Subscribers> streams = new ConcurrentHashMap<>();
+
+    private static final class Subscribers {
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private volatile DocumentStatus lastSent;
+    }
+
+    public DocumentStatusStreams(DocumentRepository documentRepository,
+                                 @Value("${textlift.documents.status-stream.timeout-ms:1800000}") long timeoutMs) {
+        this.documentRepository = documentRepository;
+        this.timeoutMs = timeoutMs;
+    }
+
+    //The current status is sent straight away, so a client that subscribes late still sees where the document is
+    public SseEmitter subscribe(UUID documentId, DocumentStatus current) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        if (TERMINAL.contains(current)) {
+            send(emitter, documentId, current);
+            emitter.complete();
+            return emitter;
+        }
+
+        streams.compute(documentId, (id, subs) -> {
+            if (subs == null) {
+                subs = new Subscribers();
+                subs.lastSent = current;
+            }
+            subs.emitters.add(emitter);
+            return subs;
+        });
+        emitter.onCompletion(() -> unsubscribe(documentId, emitter));
+        emitter.onTimeout(() -> unsubscribe(documentId, emitter));
+        emitter.onError(e -> unsubscribe(documentId, emitter));
+
+        send(emitter, documentId, current);
+        return emitter;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(DocumentStatusChangedEvent event) {
+        broadcast(event.documentId(), event.status());
+    }
+
+    @Scheduled(fixedDelayString = "${textlift.documents.status-stream.sweep-ms:5000}")
+    public void sweep() {
+        if (streams.isEmpty()) return;
+
+        for (Document doc : documentRepository.findAllById(streams.keySet())) {
+            Subscribers subs = streams.get(doc.getId());
+            if (subs != null && subs.lastSent != doc.getStatus()) {
+                broadcast(doc.getId(), doc.getStatus());
+            }
+        }
+
+        //Comment lines are ignored by EventSource but fail fast on a closed socket
+        streams.forEach((documentId, subs) -> {
+            for (SseEmitter emitter : subs.emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("keepalive"));
+                } catch (IOException | IllegalStateException e) {
+                    drop(documentId, emitter, e);
+                }
+            }
+        });
+    }
+
+    private void broadcast(UUID documentId, DocumentStatus status) {
+        Subscribers subs = streams.get(documentId);
+        if (subs == null) return;
+        subs.lastSent = status;
+
+        boolean terminal = TERMINAL.contains(status);
+        for (SseEmitter emitter : subs.emitters) {
+            if (send(emitter, documentId, status) && terminal) {
+                emitter.complete();
+            }
+        }
+        if (terminal) {
+            streams.remove(documentId);
+        }
+    }
+
+    private boolean send(SseEmitter emitter, UUID documentId, DocumentStatus status) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(STATUS_EVENT)
+                    .data(new DocumentStatusEventDto(documentId, status, TERMINAL.contains(status))));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            drop(documentId, emitter, e);
+            return false;
+        }
+    }
+
+    private void drop(UUID documentId, SseEmitter emitter, Exception e) {
+        LOG.debug("Dropping status stream for document {}", documentId, e);
+        unsubscribe(documentId, emitter);
+        emitter.completeWithError(e);
+    }
+
+    private void unsubscribe(UUID documentId, SseEmitter emitter) {
+        streams.computeIfPresent(documentId, (id, subs) -> {
+            subs.emitters.remove(emitter);
+            return subs.emitters.isEmpty() ? null : subs;
+        });
+    }
+}
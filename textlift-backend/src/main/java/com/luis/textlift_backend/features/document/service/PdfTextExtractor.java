@@ -0,0 +1,261 @@
+package com.luis.textlift_backend.features.document.service;
+
+import com.luis.textlift_backend.features.storage.service.TextPageIndex;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+
+//Strips PDF text to a UTF-8 file. Small documents are stripped on the calling thread; large ones
+//are split into contiguous page-range shards that run on the extraction pool. Each shard opens
+//its own PDDocument (PDFBox documents are not thread-safe) and writes to its own part file,
+//and the parts are concatenated in page order at the end.
+//Every strip holds one of a fixed number of CPU permits, so however many pipeline jobs (virtual
+//threads) extract at once, only that many run PDFBox's text stripping at the same time.
+//Along the way it records the char offset where each page starts (TextPageIndex).
+//A caller that may stop needing the text passes a check that is asked before every page window.
+@Component
+public class PdfTextExtractor {
+    //Pages stripped per getText call, to keep the in-memory String small
+    private static final int WINDOW = 20;
+
+    private final Executor extractionExecutor;
+    private final boolean parallelEnabled;
+    private final int shards;
+    private final int minPagesForParallel;
+    private final Semaphore cpuPermits;
+
+    public PdfTextExtractor(@Qualifier("extractionExecutor") Executor extractionExecutor,
+                            @Value("${textlift.extraction.parallel.enabled:true}") boolean parallelEnabled,
+                            @Value("${textlift.extraction.parallel.shards:0}") int shards,
+                            @Value("${textlift.extraction.parallel.min-pages:100}") int minPagesForParallel,
+                            @Value("${textlift.extraction.cpu-permits:0}") int cpuPermits) {
+        this.extractionExecutor = extractionExecutor;
+        this.parallelEnabled = parallelEnabled;
+        //0 means one shard per available core
+        this.shards = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        this.minPagesForParallel = minPagesForParallel;
+        //0 means one permit per available core
+        this.cpuPermits = new Semaphore(cpuPermits > 0 ? cpuPermits : Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    //pdf is the already-open document at source; it is used as-is for the sequential path.
+    //Returns where each page starts in the written text; its totalChars() is the text length.
+    public TextPageIndex extract(PDDocument pdf, Path source, Path target) throws IOException {
+        return extract(pdf, source, target, () -> false);
+    }
+
+    //Throws ExtractionCancelledException once cancelled says so; shard part files are still removed
+    public TextPageIndex extract(PDDocument pdf, Path source, Path target, BooleanSupplier cancelled) throws IOException {
+        int totalPages = pdf.getNumberOfPages();
+        int shardCount = Math.min(shards, Math.max(1, totalPages / WINDOW));
+        long[] pageStarts = new long[totalPages + 1];
+
+        if (!parallelEnabled || shardCount < 2 || totalPages < minPagesForParallel) {
+            try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+                pageStarts[totalPages] = stripRange(pdf, 1, totalPages, writer, pageStarts, cancelled);
+                return new TextPageIndex(pageStarts);
+            }
+        }
+
+        List<Path> parts = new ArrayList<>(shardCount);
+        List<CompletableFuture<Long>> futures = new ArrayList<>(shardCount);
+        int pagesPerShard = (totalPages + shardCount - 1) / shardCount;
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                int start = i * pagesPerShard + 1;
+                int end = Math.min(start + pagesPerShard - 1, totalPages);
+                if (start > end) break;
+
+                Path part = target.resolveSibling(target.getFileName() + ".shard-" + i);
+                parts.add(part);
+                //Shards fill disjoint slices of pageStarts, relative to their own text
+                futures.add(CompletableFuture.supplyAsync(() -> stripShard(source, start, end, part, pageStarts, cancelled), extractionExecutor));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+            concatenate(parts, target);
+            //Shift each shard's page starts by the length of the text before it
+            long chars = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                int start = i * pagesPerShard;
+                int end = Math.min(start + pagesPerShard, totalPages);
+                for (int page = start; page < end; page++) {
+                    pageStarts[page] += chars;
+                }
+                chars += futures.get(i).join();
+            }
+            pageStarts[totalPages] = chars;
+            return new TextPageIndex(pageStarts);
+        } catch (CompletionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof UncheckedShardException shardFailure) {
+                throw shardFailure.getCause();
+            }
+            throw new IOException("Failed to extract text shard", e.getCause());
+        } finally {
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    //Front matter for early identification: the first frontPages pages, then the last backPages
+    //(some books print the copyright/ISBN page at the back). Front text comes first, so an ISBN
+    //there wins over one found at the back.
+    public void extractFrontMatter(PDDocument pdf, Path target, int frontPages, int backPages) throws IOException {
+        int totalPages = pdf.getNumberOfPages();
+        int frontEnd = Math.min(frontPages, totalPages);
+        int backStart = Math.max(frontEnd + 1, totalPages - backPages + 1);
+        //Front matter is only ever read from the top; its page starts are not kept
+        long[] pageStarts = new long[totalPages];
+
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            if (frontEnd >= 1) {
+                stripRange(pdf, 1, frontEnd, writer, pageStarts, () -> false);
+            }
+            if (backStart <= totalPages) {
+                writer.write('\n');
+                stripRange(pdf, backStart, totalPages, writer, pageStarts, () -> false);
+            }
+        }
+    }
+
+    private long stripShard(Path source, int start, int end, Path part, long[] pageStarts, BooleanSupplier cancelled) {
+        try (PDDocument shardDoc = Loader.loadPDF(new RandomAccessReadBufferedFile(source.toFile()));
+             BufferedWriter writer = Files.newBufferedWriter(part, StandardCharsets.UTF_8)) {
+            return stripRange(shardDoc, start, end, writer, pageStarts, cancelled);
+        } catch (IOException e) {
+            throw new UncheckedShardException(e);
+        }
+    }
+
+    // Buffer and write 20 pages at a time into the writer to reduce memory usage.
+    // The permit is taken per window so a long book does not starve shorter ones.
+    // Fills pageStarts[firstPage - 1 .. lastPage - 1] with offsets from the start of this range.
+    private long stripRange(PDDocument pdf, int firstPage, int lastPage, Writer writer, long[] pageStarts,
+                            BooleanSupplier cancelled) throws IOException {
+        PageStartStripper stripper = new PageStartStripper(pageStarts);
+        Arrays.fill(pageStarts, firstPage - 1, lastPage, -1);
+        long chars = 0;
+        for (int start = firstPage; start <= lastPage; start += WINDOW) {
+            if (cancelled.getAsBoolean()) {
+                throw new ExtractionCancelledException();
+            }
+            int end = Math.min(start + WINDOW - 1, lastPage);
+            String text;
+            acquireCpu();
+            try {
+                text = stripper.strip(pdf, start, end, chars);
+            } finally {
+                cpuPermits.release();
+            }
+            writer.write(text);
+            chars += text.length();
+        }
+        //Pages without content never reach the stripper; they start where the next page does
+        long next = chars;
+        for (int page = lastPage - 1; page >= firstPage - 1; page--) {
+            if (pageStarts[page] < 0) {
+                pageStarts[page] = next;
+            } else {
+                next = pageStarts[page];
+            }
+        }
+        return chars;
+    }
+
+    private void acquireCpu() throws InterruptedIOException {
+        try {
+            cpuPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a CPU permit");
+        }
+    }
+
+    private static void concatenate(List<Path> parts, Path target) throws IOException {
+        try (FileChannel out = FileChannel.open(target,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Path part : parts) {
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long copied = 0;
+                    while (copied < size) {
+                        copied += in.transferTo(copied, size - copied, out);
+                    }
+                }
+            }
+        }
+    }
+
+    //Notes how much text the range has produced as each page starts. Lines end in '\n' on every
+    //platform so the offsets agree with readers that count chars line by line.
+    private static final class PageStartStripper extends PDFTextStripper {
+        private final long[] pageStarts;
+        private StringWriter window;
+        private long windowOffset;
+
+        PageStartStripper(long[] pageStarts) {
+            this.pageStarts = pageStarts;
+            setLineSeparator("\n");
+            setPageEnd("\n");
+        }
+
+        String strip(PDDocument pdf, int firstPage, int lastPage, long offset) throws IOException {
+            setStartPage(firstPage);
+            setEndPage(lastPage);
+            window = new StringWriter();
+            windowOffset = offset;
+            writeText(pdf, window);
+            return window.toString();
+        }
+
+        @Override
+        protected void startPage(PDPage page) throws IOException {
+            super.startPage(page);
+            pageStarts[getCurrentPageNo() - 1] = windowOffset + window.getBuffer().length();
+        }
+    }
+
+    //An IOException so it leaves a shard the same way a failed read does
+    public static final class ExtractionCancelledException extends IOException {
+        ExtractionCancelledException() {
+            super("Text extraction cancelled");
+        }
+    }
+
+    private static final class UncheckedShardException extends RuntimeException {
+        UncheckedShardException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -1,32 +1,28 @@
 package com.luis.textlift_backend.features.document.service.events;
 
-import com.luis.textlift_backend.features.document.service.DocumentService;
-import com.luis.textlift_backend.features.textbook.service.TextbookService;
-import org.springframework.scheduling.annotation.Async;
+import com.luis.textlift_backend.features.pipeline.domain.PipelineJobType;
+import com.luis.textlift_backend.features.pipeline.service.PipelineJobService;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionPhase;
 import org.springframework.transaction.event.TransactionalEventListener;
 
 @Component
 public class DocumentQueuedListener {
-    private final DocumentService documentService;
-    private final TextbookService textbookService;
-    public DocumentQueuedListener(DocumentService documentService, TextbookService textbookService) {
-        this.documentService = documentService;
-        this.textbookService = textbookService;
+    private final PipelineJobService pipelineJobService;
+    public DocumentQueuedListener(PipelineJobService pipelineJobService) {
+        this.pipelineJobService = pipelineJobService;
     }
 
 
-    //Only begin work after DB has been updated
-    @Async("pipeLineExecutor")
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    //Persist the next stage as a job inside the publisher's transaction, so the work survives
+    //restarts and is only visible to workers once the DB update that triggered it has committed
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
     public void onQueued(DocumentQueuedEvent event){
-        documentService.processDocument(event.documentId());
+        pipelineJobService.enqueue(PipelineJobType.PROCESS_DOCUMENT, event.documentId(), null);
     }
 
-    @Async("pipeLineExecutor")
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
     public void onReadyToId(DocumentReadyForIdEvent event){
-        textbookService.identifyTextbook(event.documentId());
+        pipelineJobService.enqueue(PipelineJobType.IDENTIFY_TEXTBOOK, event.documentId(), null);
     }
 }
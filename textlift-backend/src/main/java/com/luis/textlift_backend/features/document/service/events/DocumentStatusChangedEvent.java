@@ -0,0 +1,8 @@
+package com.luis.textlift_backend.features.document.service.events;
+
+import com.luis.textlift_backend.features.document.domain.DocumentStatus;
+
+import java.util.UUID;
+
+//Published by every pipeline stage that moves a document to a new status
+public record DocumentStatusChangedEvent(UUID documentId, DocumentStatus status) {}
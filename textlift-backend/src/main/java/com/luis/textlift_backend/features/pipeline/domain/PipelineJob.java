@@ -0,0 +1,153 @@
+package com.luis.textlift_backend.features.pipeline.domain;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(
+        name = "pipeline_job"
+)
+public class PipelineJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private PipelineJobType type;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private PipelineJobStatus status;
+
+    @Column
+    private UUID documentId;
+
+    @Column
+    private UUID uploadId;
+
+    @Column
+    private UUID textbookId;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private int maxAttempts;
+
+    @Column(nullable = false)
+    private Instant runAt;
+
+    @Column
+    private String lockedBy;
+
+    @Column
+    private Instant lockedUntil;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(updatable = false)
+    private Instant createdAt;
+
+    @UpdateTimestamp
+    @Column
+    private Instant updatedAt;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public PipelineJobType getType() {
+        return type;
+    }
+
+    public void setType(PipelineJobType type) {
+        this.type = type;
+    }
+
+    public PipelineJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(PipelineJobStatus status) {
+        this.status = status;
+    }
+
+    public UUID getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(UUID documentId) {
+        this.documentId = documentId;
+    }
+
+    public UUID getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(UUID uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public UUID getTextbookId() {
+        return textbookId;
+    }
+
+    public void setTextbookId(UUID textbookId) {
+        this.textbookId = textbookId;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Instant getRunAt() {
+        return runAt;
+    }
+
+    public void setRunAt(Instant runAt) {
+        this.runAt = runAt;
+    }
+
+    public String getLockedBy() {
+        return lockedBy;
+    }
+
+    public void setLockedBy(String lockedBy) {
+        this.lockedBy = lockedBy;
+    }
+
+    public Instant getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public void setLockedUntil(Instant lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
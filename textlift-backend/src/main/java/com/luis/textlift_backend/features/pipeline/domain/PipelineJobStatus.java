@@ -0,0 +1,8 @@
+package com.luis.textlift_backend.features.pipeline.domain;
+
+public enum PipelineJobStatus {
+    PENDING, //Waiting for run_at
+    RUNNING, //Leased by a worker until locked_until
+    SUCCEEDED,
+    DEAD //Out of attempts or failed permanently; needs a human
+}
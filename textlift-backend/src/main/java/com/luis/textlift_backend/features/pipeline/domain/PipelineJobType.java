@@ -0,0 +1,8 @@
+package com.luis.textlift_backend.features.pipeline.domain;
+
+public enum PipelineJobType {
+    PROCESS_DOCUMENT, //Extract metadata + text from the uploaded PDF
+    IDENTIFY_TEXTBOOK, //ISBN lookup and textbook linking
+    GENERATE_ANNOTATIONS, //LLM annotation of the extracted text
+    SCAN_UPLOAD //VirusTotal verdict for an uploaded file (uploadId, no document yet)
+}
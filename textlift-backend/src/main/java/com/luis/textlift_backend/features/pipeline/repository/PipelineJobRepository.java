@@ -0,0 +1,55 @@
+package com.luis.textlift_backend.features.pipeline.repository;
+
+import com.luis.textlift_backend.features.pipeline.domain.PipelineJob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface PipelineJobRepository extends JpaRepository<PipelineJob, UUID> {
+
+    //Due jobs of one stage, plus RUNNING jobs whose lease ran out (their worker died). SKIP LOCKED
+    //lets several nodes poll at once without handing the same row to two of them.
+    @Query(value = """
+            select * from pipeline_job
+            where type = :type
+              and ((status = 'PENDING' and run_at <= :now)
+                or (status = 'RUNNING' and locked_until < :now))
+            order by run_at
+            limit :limit
+            for update skip locked
+            """, nativeQuery = true)
+    List<PipelineJob> lockDueJobs(String type, Instant now, int limit);
+
+    //Jobs waiting per stage across all nodes (including ones backing off before a retry)
+    @Query(value = "select type as type, count(*) as jobs from pipeline_job where status = 'PENDING' group by type",
+            nativeQuery = true)
+    List<StageBacklog> countPendingByType();
+
+    interface StageBacklog {
+        String getType();
+        long getJobs();
+    }
+
+    //Heartbeat for long jobs (annotation) so their lease does not expire while still running
+    @Modifying
+    @Query("update PipelineJob j set j.lockedUntil = :lockedUntil where j.id in :ids and j.lockedBy = :workerId")
+    int extendLeases(Collection<UUID> ids, String workerId, Instant lockedUntil);
+
+    //The job only while it is still this worker's lease (same worker, same attempt). A worker that
+    //stalled past its lease finds nothing here once another worker (or a later lease) has the job.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            select j from PipelineJob j
+            where j.id = :id and j.lockedBy = :workerId and j.attempts = :attempt
+              and j.status = com.luis.textlift_backend.features.pipeline.domain.PipelineJobStatus.RUNNING
+            """)
+    Optional<PipelineJob> lockLeased(UUID id, String workerId, int attempt);
+}
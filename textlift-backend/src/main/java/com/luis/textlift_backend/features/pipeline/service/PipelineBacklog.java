@@ -0,0 +1,73 @@
+package com.luis.textlift_backend.features.pipeline.service;
+
+import com.luis.textlift_backend.features.pipeline.domain.PipelineJobType;
+import com.luis.textlift_backend.features.pipeline.repository.PipelineJobRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Pending jobs per stage, counted across every node from pipeline_job. Refreshed on a timer so the
+//upload path can check it without a query per request, and exported as the
+//textlift.pipeline.backlog{stage} gauge.
+@Component
+public class PipelineBacklog {
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineBacklog.class);
+
+    private final PipelineJobRepository jobRepository;
+    private final Map<PipelineJobType, AtomicLong> pending = new EnumMap<>(PipelineJobType.class);
+    private final long maxExtractBacklog;
+    private final Duration retryAfter;
+
+    public PipelineBacklog(PipelineJobRepository jobRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${textlift.pipeline.stage.extract.max-backlog:500}") long maxExtractBacklog,
+                           @Value("${textlift.pipeline.backpressure.retry-after:PT30S}") Duration retryAfter) {
+        this.jobRepository = jobRepository;
+        this.maxExtractBacklog = maxExtractBacklog;
+        this.retryAfter = retryAfter;
+        for (PipelineJobType type : PipelineJobType.values()) {
+            AtomicLong count = new AtomicLong();
+            pending.put(type, count);
+            Gauge.builder("textlift.pipeline.backlog", count, AtomicLong::get)
+                    .description("Pending pipeline jobs, all nodes")
+                    .tag("stage", type.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${textlift.pipeline.backlog.refresh-ms:5000}")
+    public void refresh() {
+        try {
+            Map<PipelineJobType, Long> counts = new EnumMap<>(PipelineJobType.class);
+            for (PipelineJobRepository.StageBacklog row : jobRepository.countPendingByType()) {
+                counts.put(PipelineJobType.valueOf(row.getType()), row.getJobs());
+            }
+            pending.forEach((type, count) -> count.set(counts.getOrDefault(type, 0L)));
+        } catch (RuntimeException e) {
+            //Keep the last known counts; the next refresh tries again
+            LOG.warn("Failed to refresh pipeline backlog", e);
+        }
+    }
+
+    public long pending(PipelineJobType type) {
+        return pending.get(type).get();
+    }
+
+    //Backpressure for new documents: refuse to queue more extraction work than the stage can drain,
+    //instead of letting the table grow without bound. The client retries after Retry-After.
+    public void requireExtractCapacity() {
+        if (maxExtractBacklog > 0 && pending(PipelineJobType.PROCESS_DOCUMENT) >= maxExtractBacklog) {
+            throw new PipelineBusyException("Too many documents are waiting to be processed; please retry shortly.",
+                    retryAfter);
+        }
+    }
+}
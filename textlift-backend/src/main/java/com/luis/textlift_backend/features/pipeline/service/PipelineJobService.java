@@ -0,0 +1,205 @@
+package com.luis.textlift_backend.features.pipeline.service;
+
+import com.luis.textlift_backend.features.document.domain.DocumentStatus;
+import com.luis.textlift_backend.features.document.repository.DocumentRepository;
+import com.luis.textlift_backend.features.document.service.events.DocumentStatusChangedEvent;
+import com.luis.textlift_backend.features.pipeline.domain.PipelineJob;
+import com.luis.textlift_backend.features.pipeline.domain.PipelineJobStatus;
+import com.luis.textlift_backend.features.pipeline.domain.PipelineJobType;
+import com.luis.textlift_backend.features.pipeline.repository.PipelineJobRepository;
+import com.luis.textlift_backend.features.upload.service.UploadScanService;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+public class PipelineJobService {
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineJobService.class);
+
+    private final PipelineJobRepository jobRepository;
+    private final DocumentRepository documentRepository;
+    private final UploadScanService uploadScanService;
+    private final int maxAttempts;
+    private final Duration leaseDuration;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final ApplicationEventPublisher events;
+
+    public PipelineJobService(PipelineJobRepository jobRepository,
+                              DocumentRepository documentRepository,
+                              UploadScanService uploadScanService,
+                              @Value("${textlift.pipeline.max-attempts:5}") int maxAttempts,
+                              @Value("${textlift.pipeline.lease:PT5M}") Duration leaseDuration,
+                              @Value("${textlift.pipeline.backoff.base:PT30S}") Duration baseBackoff,
+                              @Value("${textlift.pipeline.backoff.max:PT30M}") Duration maxBackoff,
+                              ApplicationEventPublisher events) {
+        this.jobRepository = jobRepository;
+        this.documentRepository = documentRepository;
+        this.uploadScanService = uploadScanService;
+        this.maxAttempts = maxAttempts;
+        this.leaseDuration = leaseDuration;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.events = events;
+    }
+
+    //Called from inside the producer's transaction, so the job row commits (or rolls back)
+    //together with the state change that created it
+    @Transactional
+    public PipelineJob enqueue(PipelineJobType type, UUID documentId, UUID textbookId) {
+        PipelineJob job = new PipelineJob();
+        job.setType(type);
+        job.setStatus(PipelineJobStatus.PENDING);
+        job.setDocumentId(documentId);
+        job.setTextbookId(textbookId);
+        job.setMaxAttempts(maxAttempts);
+        job.setRunAt(Instant.now());
+        return jobRepository.save(job);
+    }
+
+    //Scan jobs run before there is a document, so they point at the upload session instead
+    @Transactional
+    public PipelineJob enqueueUploadScan(UUID uploadId) {
+        PipelineJob job = new PipelineJob();
+        job.setType(PipelineJobType.SCAN_UPLOAD);
+        job.setStatus(PipelineJobStatus.PENDING);
+        job.setUploadId(uploadId);
+        job.setMaxAttempts(maxAttempts);
+        job.setRunAt(Instant.now());
+        return jobRepository.save(job);
+    }
+
+    //Claims up to `limit` due jobs of one stage for this worker. Expired leases count as a failed attempt,
+    //so a job that keeps killing its worker eventually lands in DEAD instead of looping forever.
+    @Transactional
+    public List<PipelineJob> lease(String workerId, PipelineJobType type, int limit) {
+        Instant now = Instant.now();
+        List<PipelineJob> leased = new ArrayList<>();
+        for (PipelineJob job : jobRepository.lockDueJobs(type.name(), now, limit)) {
+            if (job.getAttempts() >= job.getMaxAttempts()) {
+                markDead(job, "Lease expired after final attempt");
+                continue;
+            }
+            job.setStatus(PipelineJobStatus.RUNNING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLockedBy(workerId);
+            job.setLockedUntil(now.plus(leaseDuration));
+            leased.add(job);
+        }
+        return leased;
+    }
+
+    @Transactional
+    public void extendLeases(Collection<UUID> jobIds, String workerId) {
+        if (jobIds.isEmpty()) return;
+        jobRepository.extendLeases(jobIds, workerId, Instant.now().plus(leaseDuration));
+    }
+
+    //complete, release and fail only act on a lease the caller still holds; a result that arrives
+    //after the lease moved on is stale and ignored (the job's current holder decides its outcome)
+    @Transactional
+    public void complete(PipelineJob leased) {
+        stillLeased(leased).ifPresent(job -> {
+            job.setStatus(PipelineJobStatus.SUCCEEDED);
+            job.setLockedBy(null);
+            job.setLockedUntil(null);
+        });
+    }
+
+    //Hands a leased job back untouched when this node could not start it (executor rejected it),
+    //so the rejection does not count as an attempt
+    @Transactional
+    public void release(PipelineJob leased) {
+        stillLeased(leased).ifPresent(job -> {
+            job.setStatus(PipelineJobStatus.PENDING);
+            job.setAttempts(Math.max(0, job.getAttempts() - 1));
+            job.setLockedBy(null);
+            job.setLockedUntil(null);
+        });
+    }
+
+    //Retryable failures go back to PENDING with exponential backoff; permanent ones (or the
+    //last attempt) go to the DEAD letter state and the document is marked failed.
+    @Transactional
+    public void fail(PipelineJob leased, Throwable error, boolean retryable) {
+        stillLeased(leased).ifPresent(job -> {
+            String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+            if (!retryable || job.getAttempts() >= job.getMaxAttempts()) {
+                markDead(job, message);
+                return;
+            }
+            job.setStatus(PipelineJobStatus.PENDING);
+            job.setLastError(message);
+            job.setLockedBy(null);
+            job.setLockedUntil(null);
+            job.setRunAt(Instant.now().plus(backoff(job.getAttempts())));
+            LOG.warn("Pipeline job {} ({}) failed on attempt {}; retrying at {}",
+                    job.getId(), job.getType(), job.getAttempts(), job.getRunAt(), error);
+        });
+    }
+
+    private Optional<PipelineJob> stillLeased(PipelineJob leased) {
+        Optional<PipelineJob> job = jobRepository.lockLeased(leased.getId(), leased.getLockedBy(), leased.getAttempts());
+        if (job.isEmpty()) {
+            LOG.warn("Pipeline job {} ({}) is no longer leased by {} on attempt {}; ignoring its result",
+                    leased.getId(), leased.getType(), leased.getLockedBy(), leased.getAttempts());
+        }
+        return job;
+    }
+
+    private Duration backoff(int attempts) {
+        long factor = 1L << Math.min(attempts - 1, 20);
+        Duration delay = baseBackoff.multipliedBy(factor);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private void markDead(PipelineJob job, String message) {
+        job.setStatus(PipelineJobStatus.DEAD);
+        job.setLastError(message);
+        job.setLockedBy(null);
+        job.setLockedUntil(null);
+        LOG.error("Pipeline job {} ({}) for document {} upload {} is dead: {}",
+                job.getId(), job.getType(), job.getDocumentId(), job.getUploadId(), message);
+
+        if (job.getType() == PipelineJobType.SCAN_UPLOAD) {
+            uploadScanService.scanAbandoned(job.getUploadId());
+            return;
+        }
+
+        DocumentStatus failed = job.getType() == PipelineJobType.IDENTIFY_TEXTBOOK
+                ? DocumentStatus.FAILED_TO_IDENTIFY_ISBN
+                : DocumentStatus.FAILED_TO_GENERATE;
+        documentRepository.findById(job.getDocumentId()).ifPresent(doc -> {
+            doc.setStatus(failed);
+            documentRepository.save(doc);
+            events.publishEvent(new DocumentStatusChangedEvent(doc.getId(), failed));
+        });
+        if (job.getType() == PipelineJobType.GENERATE_ANNOTATIONS && job.getTextbookId() != null) {
+            handOffAnnotation(job);
+        }
+    }
+
+    //Other uploads of the textbook wait on the document its annotation is generated from (see
+    //AnnotationService.startOrResumeAnnotation); with that one failed, the next of them takes over
+    private void handOffAnnotation(PipelineJob job) {
+        documentRepository.findByTextbook_IdAndStatus(job.getTextbookId(), DocumentStatus.ANNOTATIONS_GENERATING).stream()
+                .filter(doc -> !doc.getId().equals(job.getDocumentId()))
+                .findFirst()
+                .ifPresent(doc -> {
+                    LOG.info("Annotation of textbook {} handed from document {} to {}",
+                            job.getTextbookId(), job.getDocumentId(), doc.getId());
+                    enqueue(PipelineJobType.GENERATE_ANNOTATIONS, doc.getId(), job.getTextbookId());
+                });
+    }
+}
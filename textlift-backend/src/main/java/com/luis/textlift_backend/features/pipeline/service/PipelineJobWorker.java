@@ -0,0 +1,161 @@
+package com.luis.textlift_backend.features.pipeline.service;
+
+import com.luis.textlift_backend.features.annotation.service.AnnotationService;
+import com.luis.textlift_backend.features.config.metrics.PipelineMetrics;
+import com.luis.textlift_backend.features.document.service.DocumentService;
+import com.luis.textlift_backend.features.pipeline.domain.PipelineJob;
+import com.luis.textlift_backend.features.pipeline.domain.PipelineJobType;
+import com.luis.textlift_backend.features.textbook.service.TextbookService;
+import com.luis.textlift_backend.features.upload.service.UploadScanService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+//Polls the pipeline_job table and runs leased jobs on their stage's executor. Each stage leases
+//only as many jobs as it has free slots, so work that this node cannot start stays in the table
+//where another node (or this one, later) can pick it up, and one busy stage never holds back another.
+@Component
+public class PipelineJobWorker {
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineJobWorker.class);
+
+    private final PipelineJobService jobService;
+    private final DocumentService documentService;
+    private final TextbookService textbookService;
+    private final AnnotationService annotationService;
+    private final UploadScanService uploadScanService;
+    private final PipelineMetrics metrics;
+    private final Map<PipelineJobType, Stage> stages = new EnumMap<>(PipelineJobType.class);
+    private final String workerId;
+
+    //One bulkhead: its own executor, slot count and set of running jobs
+    private record Stage(Executor executor, int concurrency, Set<UUID> running) {
+        int free() {
+            return concurrency - running.size();
+        }
+    }
+
+    public PipelineJobWorker(PipelineJobService jobService,
+                             DocumentService documentService,
+                             TextbookService textbookService,
+                             AnnotationService annotationService,
+                             UploadScanService uploadScanService,
+                             MeterRegistry meterRegistry,
+                             PipelineMetrics metrics,
+                             @Qualifier("extractStageExecutor") Executor extractExecutor,
+                             @Qualifier("identifyStageExecutor") Executor identifyExecutor,
+                             @Qualifier("annotateStageExecutor") Executor annotateExecutor,
+                             @Qualifier("scanStageExecutor") Executor scanExecutor,
+                             @Value("${textlift.pipeline.stage.extract.concurrency:4}") int extractConcurrency,
+                             @Value("${textlift.pipeline.stage.identify.concurrency:4}") int identifyConcurrency,
+                             @Value("${textlift.pipeline.stage.annotate.concurrency:4}") int annotateConcurrency,
+                             @Value("${textlift.pipeline.stage.scan.concurrency:2}") int scanConcurrency) {
+        this.jobService = jobService;
+        this.documentService = documentService;
+        this.textbookService = textbookService;
+        this.annotationService = annotationService;
+        this.uploadScanService = uploadScanService;
+        this.metrics = metrics;
+        addStage(PipelineJobType.PROCESS_DOCUMENT, extractExecutor, extractConcurrency, meterRegistry);
+        addStage(PipelineJobType.IDENTIFY_TEXTBOOK, identifyExecutor, identifyConcurrency, meterRegistry);
+        addStage(PipelineJobType.GENERATE_ANNOTATIONS, annotateExecutor, annotateConcurrency, meterRegistry);
+        addStage(PipelineJobType.SCAN_UPLOAD, scanExecutor, scanConcurrency, meterRegistry);
+        this.workerId = hostName() + "-" + UUID.randomUUID();
+    }
+
+    @Scheduled(fixedDelayString = "${textlift.pipeline.poll-interval-ms:2000}")
+    public void poll() {
+        stages.forEach((type, stage) -> {
+            int free = stage.free();
+            if (free <= 0) return;
+
+            List<PipelineJob> jobs = jobService.lease(workerId, type, free);
+            for (PipelineJob job : jobs) {
+                stage.running().add(job.getId());
+                try {
+                    stage.executor().execute(() -> run(job, stage));
+                } catch (TaskRejectedException e) {
+                    stage.running().remove(job.getId());
+                    LOG.warn("Stage {} rejected pipeline job {}; releasing it", type, job.getId());
+                    jobService.release(job);
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${textlift.pipeline.heartbeat-interval-ms:60000}")
+    public void heartbeat() {
+        Set<UUID> running = new HashSet<>();
+        stages.values().forEach(stage -> running.addAll(stage.running()));
+        jobService.extendLeases(running, workerId);
+    }
+
+    private void addStage(PipelineJobType type, Executor executor, int concurrency, MeterRegistry meterRegistry) {
+        Stage stage = new Stage(executor, concurrency, ConcurrentHashMap.newKeySet());
+        stages.put(type, stage);
+        Gauge.builder("textlift.pipeline.running", stage.running(), Set::size)
+                .description("Pipeline jobs running on this node")
+                .tag("stage", type.name())
+                .register(meterRegistry);
+        Gauge.builder("textlift.pipeline.slots", stage, Stage::concurrency)
+                .description("Pipeline job slots on this node")
+                .tag("stage", type.name())
+                .register(meterRegistry);
+    }
+
+    //Timed as textlift.stage{stage=<job type>}: process_document, identify_textbook, ...
+    private void run(PipelineJob job, Stage stage) {
+        String stageName = job.getType().name().toLowerCase();
+        Timer.Sample sample = metrics.start();
+        try {
+            switch (job.getType()) {
+                case SCAN_UPLOAD -> uploadScanService.scan(job.getUploadId());
+                case PROCESS_DOCUMENT -> documentService.processDocument(job.getDocumentId());
+                case IDENTIFY_TEXTBOOK -> {
+                    textbookService.identifyTextbook(job.getDocumentId());
+                    textbookService.deleteFrontMatterText(job.getDocumentId());
+                }
+                case GENERATE_ANNOTATIONS -> {
+                    annotationService.generateAnnotations(job.getTextbookId(), job.getDocumentId());
+                    annotationService.deleteExtractedText(job.getDocumentId());
+                }
+            }
+            jobService.complete(job);
+            metrics.stop(sample, stageName, PipelineMetrics.OUTCOME_SUCCESS);
+        } catch (Exception e) {
+            //4xx means the job can never succeed (missing document, wrong state); don't retry it
+            boolean retryable = !(e instanceof ResponseStatusException rse && rse.getStatusCode().is4xxClientError());
+            metrics.stop(sample, stageName, retryable ? "retryable_error" : PipelineMetrics.OUTCOME_ERROR);
+            LOG.warn("Pipeline job {} ({}) failed", job.getId(), job.getType(), e);
+            jobService.fail(job, e, retryable);
+        } finally {
+            stage.running().remove(job.getId());
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "textlift";
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.luis.textlift_backend.features.storage.service;
+
+import java.util.regex.Pattern;
+
+//Blob names for one document, derived from the SHA-256 of its PDF
+public final class BlobKeys {
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    private BlobKeys() {}
+
+    public static String pdf(String sha256) {
+        return checked(sha256) + ".pdf";
+    }
+
+    //Fully extracted text, block compressed (see CompressedText). Documents extracted before
+    //compression still point at a plain <hash>.txt blob, which readers also accept.
+    public static String text(String sha256) {
+        return checked(sha256) + ".txt.gz";
+    }
+
+    //Block index of the compressed text, for readers that seek
+    public static String textIndex(String sha256) {
+        return checked(sha256) + ".txt.idx";
+    }
+
+    //Char offset of each page in the text (TextPageIndex)
+    public static String textPages(String sha256) {
+        return checked(sha256) + ".pages.idx";
+    }
+
+    //First/last pages, stripped ahead of the full text for early identification
+    public static String frontMatter(String sha256) {
+        return checked(sha256) + ".front.txt.gz";
+    }
+
+    private static String checked(String sha256) {
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            throw new IllegalArgumentException("Not a lowercase hex SHA-256: " + sha256);
+        }
+        return sha256;
+    }
+}
@@ -0,0 +1,47 @@
+package com.luis.textlift_backend.features.storage.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+//Durable storage for uploaded PDFs and the text extracted from them, shared by every node.
+//Keys are content addressed (the SHA-256 of the uploaded PDF plus a suffix, see BlobKeys), so
+//identical uploads are stored once. Select the implementation with textlift.storage.type.
+public interface BlobStore {
+
+    //Stores the file at source under key, unless the key already exists. Readers never see a
+    //partially written blob. Takes a file, not a stream: every producer already writes one (the
+    //ingest writer while hashing the upload, the extractor and compressor in the work dir), and a
+    //file gives S3 a known length and a body the SDK can resend on a retried request.
+    void put(String key, Path source) throws IOException;
+
+    //Streams the blob; NoSuchFileException if it does not exist
+    InputStream open(String key) throws IOException;
+
+    //Streams the blob from byte offset on, for readers that seek with an index (CompressedText)
+    default InputStream open(String key, long offset) throws IOException {
+        InputStream in = open(key);
+        try {
+            in.skipNBytes(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    boolean exists(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    //The blob as a file on local disk, for readers that need random access (PDFBox). Closing it
+    //removes the temporary copy, if one had to be made.
+    LocalFile toLocalFile(String key) throws IOException;
+
+    interface LocalFile extends AutoCloseable {
+        Path path();
+
+        @Override
+        void close() throws IOException;
+    }
+}
@@ -0,0 +1,155 @@
+package com.luis.textlift_backend.features.storage.service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+//Extracted text is stored as independently gzipped blocks of about BLOCK_BYTES of UTF-8 each, cut
+//on character boundaries. Concatenated gzip members are still one valid gzip file (zcat reads it),
+//but with the TextBlockIndex a reader can start inflating at any block instead of at the top.
+//Readers only inflate as far as they read, so nothing ever holds the whole text in memory.
+public final class CompressedText {
+    static final int BLOCK_BYTES = 256 * 1024;
+    private static final int INFLATE_BUFFER = 64 * 1024;
+
+    private CompressedText() {}
+
+    //Compresses the UTF-8 text file at plain into target and returns its block index
+    public static TextBlockIndex compress(Path plain, Path target) throws IOException {
+        return compress(plain, target, BLOCK_BYTES);
+    }
+
+    static TextBlockIndex compress(Path plain, Path target, int blockBytes) throws IOException {
+        LongStream.Builder compressedOffsets = LongStream.builder();
+        LongStream.Builder charOffsets = LongStream.builder();
+        long compressed = 0;
+        long chars = 0;
+
+        try (InputStream in = Files.newInputStream(plain);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+            byte[] buf = new byte[blockBytes];
+            ByteArrayOutputStream member = new ByteArrayOutputStream(blockBytes / 2);
+            int carry = 0;
+            while (true) {
+                int n = carry + in.readNBytes(buf, carry, blockBytes - carry);
+                if (n == 0) break;
+                //A full buffer may end mid-character; that tail starts the next block
+                int cut = n == blockBytes ? charBoundary(buf, n) : n;
+
+                member.reset();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(member)) {
+                    gzip.write(buf, 0, cut);
+                }
+                member.writeTo(out);
+
+                compressedOffsets.add(compressed);
+                charOffsets.add(chars);
+                compressed += member.size();
+                chars += utf16Length(buf, cut);
+
+                carry = n - cut;
+                System.arraycopy(buf, cut, buf, 0, carry);
+                if (n < blockBytes) break;
+            }
+        }
+        compressedOffsets.add(compressed);
+        charOffsets.add(chars);
+        return new TextBlockIndex(compressedOffsets.build().toArray(), charOffsets.build().toArray());
+    }
+
+    //Whole text from the top. Blobs stored before compression (plain .txt) are read as they are.
+    public static Reader reader(BlobStore store, String key) throws IOException {
+        InputStream raw = store.open(key);
+        return key.endsWith(".gz") ? inflate(raw) : new InputStreamReader(raw, StandardCharsets.UTF_8);
+    }
+
+    //Text from charOffset on, inflating from the block that holds it rather than from the top
+    public static Reader reader(BlobStore store, String key, TextBlockIndex index, long charOffset) throws IOException {
+        if (charOffset >= index.totalChars()) return Reader.nullReader();
+        int block = index.blockOf(charOffset);
+        Reader reader = inflate(store.open(key, index.compressedOffset(block)));
+        try {
+            reader.skip(charOffset - index.charOffset(block));
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+        return reader;
+    }
+
+    public static TextBlockIndex readIndex(BlobStore store, String key) throws IOException {
+        try (InputStream in = store.open(key)) {
+            return TextBlockIndex.readFrom(in);
+        }
+    }
+
+    public static TextPageIndex readPages(BlobStore store, String key) throws IOException {
+        try (InputStream in = store.open(key)) {
+            return TextPageIndex.readFrom(in);
+        }
+    }
+
+    private static Reader inflate(InputStream raw) throws IOException {
+        PeekingInputStream in = new PeekingInputStream(raw);
+        try {
+            //Empty text is stored as zero blocks, which GZIPInputStream would reject
+            if (in.available() == 0) {
+                in.close();
+                return Reader.nullReader();
+            }
+            return new InputStreamReader(new GZIPInputStream(in, INFLATE_BUFFER), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    //Start of the last character in buf[0, n) if it is cut off, else n
+    private static int charBoundary(byte[] buf, int n) {
+        int i = n - 1;
+        while (i > 0 && n - i < 4 && (buf[i] & 0xC0) == 0x80) i--;
+        int b = buf[i] & 0xFF;
+        int length = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+        return i + length <= n ? n : i;
+    }
+
+    //Java chars in the UTF-8 bytes: one per lead byte, two for a 4-byte sequence (surrogate pair)
+    private static long utf16Length(byte[] buf, int n) {
+        long chars = 0;
+        for (int i = 0; i < n; i++) {
+            int b = buf[i] & 0xFF;
+            if ((b & 0xC0) != 0x80) chars++;
+            if (b >= 0xF0) chars++;
+        }
+        return chars;
+    }
+
+    //GZIPInputStream only moves on to the next member when the stream below reports available()
+    //bytes, which network streams (S3) do not always do mid-transfer; peeking one byte makes it exact
+    private static final class PeekingInputStream extends PushbackInputStream {
+        PeekingInputStream(InputStream in) {
+            super(in, 1);
+        }
+
+        @Override
+        public int available() throws IOException {
+            int available = super.available();
+            if (available > 0) return available;
+            int b = read();
+            if (b < 0) return 0;
+            unread(b);
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.luis.textlift_backend.features.storage.service;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.UUID;
+
+//Blobs in an S3-compatible bucket (AWS, or MinIO with textlift.storage.s3.endpoint and
+//path-style access). A PUT only becomes visible once the whole object is stored, which gives the
+//same no-partial-reads guarantee as the local store's rename. SDK failures surface as IOException
+//so callers treat them like any other storage error (the pipeline job retries).
+@Component
+@ConditionalOnProperty(name = "textlift.storage.type", havingValue = "s3")
+public class S3BlobStore implements BlobStore, DisposableBean {
+    private final S3Client s3;
+    private final String bucket;
+    private final String prefix;
+    private final Path workDir;
+
+    public S3BlobStore(@Value("${textlift.storage.s3.bucket}") String bucket,
+                       @Value("${textlift.storage.s3.prefix:}") String prefix,
+                       @Value("${textlift.storage.s3.endpoint:}") String endpoint,
+                       @Value("${textlift.storage.s3.region:us-east-1}") String region,
+                       @Value("${textlift.storage.s3.path-style-access:false}") boolean pathStyleAccess,
+                       @Value("${textlift.storage.s3.access-key:}") String accessKey,
+                       @Value("${textlift.storage.s3.secret-key:}") String secretKey,
+                       @Value("${textlift.storage.work-dir:/var/lib/textlift/work}") Path workDir) {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .forcePathStyle(pathStyleAccess)
+                .credentialsProvider(credentials(accessKey, secretKey));
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        this.s3 = builder.build();
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.workDir = workDir;
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        if (exists(key)) return;
+        try {
+            s3.putObject(b -> b.bucket(bucket).key(prefix + key), RequestBody.fromFile(source));
+        } catch (SdkException e) {
+            throw new IOException("Failed to store blob " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            return s3.getObject(b -> b.bucket(bucket).key(prefix + key));
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            throw new IOException("Failed to read blob " + key, e);
+        }
+    }
+
+    //Ranged GET, so seeking into a large text blob does not download what comes before
+    @Override
+    public InputStream open(String key, long offset) throws IOException {
+        if (offset == 0) return open(key);
+        try {
+            return s3.getObject(b -> b.bucket(bucket).key(prefix + key).range("bytes=" + offset + "-"));
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            throw new IOException("Failed to read blob " + key, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        try {
+            s3.headObject(b -> b.bucket(bucket).key(prefix + key));
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        } catch (S3Exception e) {
+            //HEAD responses have no body, so a missing key can arrive as a bare 404
+            if (e.statusCode() == 404) return false;
+            throw new IOException("Failed to check blob " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("Failed to check blob " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(b -> b.bucket(bucket).key(prefix + key));
+        } catch (SdkException e) {
+            throw new IOException("Failed to delete blob " + key, e);
+        }
+    }
+
+    //Downloads to the work dir; the copy is deleted on close
+    @Override
+    public LocalFile toLocalFile(String key) throws IOException {
+        Files.createDirectories(workDir);
+        Path path = workDir.resolve(UUID.randomUUID() + "-" + key);
+        try {
+            s3.getObject(b -> b.bucket(bucket).key(prefix + key), ResponseTransformer.toFile(path));
+        } catch (NoSuchKeyException e) {
+            Files.deleteIfExists(path);
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            Files.deleteIfExists(path);
+            throw new IOException("Failed to download blob " + key, e);
+        }
+        return new LocalFile() {
+            @Override
+            public Path path() {
+                return path;
+            }
+
+            @Override
+            public void close() throws IOException {
+                Files.deleteIfExists(path);
+            }
+        };
+    }
+
+    @Override
+    public void destroy() {
+        s3.close();
+    }
+
+    //Explicit keys (MinIO, local testing) or the default AWS chain (env, profile, instance role)
+    private static AwsCredentialsProvider credentials(String accessKey, String secretKey) {
+        if (!accessKey.isBlank() && !secretKey.isBlank()) {
+            return StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        }
+        return DefaultCredentialsProvider.builder().build();
+    }
+}
@@ -0,0 +1,84 @@
+package com.luis.textlift_backend.features.storage.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+//Where each block of a compressed text blob starts: block i holds chars [charOffset(i), charOffset(i + 1))
+//and its gzip member starts at byte compressedOffset(i). Both arrays carry one extra entry for the end.
+//Stored next to the text as <hash>.txt.idx: magic, version, block count, then the offset pairs.
+public final class TextBlockIndex {
+    private static final int MAGIC = 0x544c4249; //"TLBI"
+    private static final int VERSION = 1;
+
+    private final long[] compressedOffsets;
+    private final long[] charOffsets;
+
+    TextBlockIndex(long[] compressedOffsets, long[] charOffsets) {
+        if (compressedOffsets.length == 0 || compressedOffsets.length != charOffsets.length) {
+            throw new IllegalArgumentException("Offsets need one entry per block plus the end");
+        }
+        this.compressedOffsets = compressedOffsets;
+        this.charOffsets = charOffsets;
+    }
+
+    public int blockCount() {
+        return charOffsets.length - 1;
+    }
+
+    public long totalChars() {
+        return charOffsets[blockCount()];
+    }
+
+    public long compressedSize() {
+        return compressedOffsets[blockCount()];
+    }
+
+    public long charOffset(int block) {
+        return charOffsets[block];
+    }
+
+    public long compressedOffset(int block) {
+        return compressedOffsets[block];
+    }
+
+    //Block holding the char at charOffset; the last block for offsets past the end
+    public int blockOf(long charOffset) {
+        if (blockCount() == 0) return 0;
+        int i = Arrays.binarySearch(charOffsets, 0, blockCount(), charOffset);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(blockCount());
+        for (int i = 0; i <= blockCount(); i++) {
+            data.writeLong(compressedOffsets[i]);
+            data.writeLong(charOffsets[i]);
+        }
+        data.flush();
+    }
+
+    public static TextBlockIndex readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not a text block index");
+        }
+        int blocks = data.readInt();
+        if (blocks < 0) {
+            throw new IOException("Corrupt text block index");
+        }
+        long[] compressed = new long[blocks + 1];
+        long[] chars = new long[blocks + 1];
+        for (int i = 0; i <= blocks; i++) {
+            compressed[i] = data.readLong();
+            chars[i] = data.readLong();
+        }
+        return new TextBlockIndex(compressed, chars);
+    }
+}
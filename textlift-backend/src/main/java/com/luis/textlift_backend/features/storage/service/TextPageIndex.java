@@ -0,0 +1,85 @@
+package com.luis.textlift_backend.features.storage.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+//Where each PDF page starts in the extracted text: page p (1-based) is chars [start(p), end(p)).
+//One long per page plus the end of the text; a page without text starts where the next one does.
+//Stored next to the text as <hash>.pages.idx: magic, version, page count, then the offsets.
+public final class TextPageIndex {
+    private static final int MAGIC = 0x544c5049; //"TLPI"
+    private static final int VERSION = 1;
+
+    private final long[] pageStarts;
+
+    public TextPageIndex(long[] pageStarts) {
+        if (pageStarts.length == 0) {
+            throw new IllegalArgumentException("Page starts need one entry per page plus the end");
+        }
+        this.pageStarts = pageStarts;
+    }
+
+    public int pageCount() {
+        return pageStarts.length - 1;
+    }
+
+    public long totalChars() {
+        return pageStarts[pageCount()];
+    }
+
+    public long start(int page) {
+        return pageStarts[page - 1];
+    }
+
+    public long end(int page) {
+        return pageStarts[page];
+    }
+
+    //Page holding the char at charOffset: the last page starting at or before it, so empty pages
+    //sharing a start with the next one are skipped. 0 when the text has no pages.
+    public int pageAt(long charOffset) {
+        int lo = 0;
+        int hi = pageCount() - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (pageStarts[mid] <= charOffset) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found + 1;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(pageCount());
+        for (long start : pageStarts) {
+            data.writeLong(start);
+        }
+        data.flush();
+    }
+
+    public static TextPageIndex readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not a text page index");
+        }
+        int pages = data.readInt();
+        if (pages < 0) {
+            throw new IOException("Corrupt text page index");
+        }
+        long[] starts = new long[pages + 1];
+        for (int i = 0; i <= pages; i++) {
+            starts[i] = data.readLong();
+        }
+        return new TextPageIndex(starts);
+    }
+}
@@ -0,0 +1,68 @@
+package com.luis.textlift_backend.features.textbook.domain;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+//Persisted Google Books lookup for one ISBN; payload is the TextbookLookupDto as JSON
+@Entity
+@Table(
+        name = "isbn_lookup_cache"
+)
+public class IsbnLookup {
+    @Id
+    @Column(length = 13)
+    private String isbn;
+
+    @Column(nullable = false)
+    private boolean found;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(nullable = false)
+    private Instant fetchedAt;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public void setIsbn(String isbn) {
+        this.isbn = isbn;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Instant getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public void setFetchedAt(Instant fetchedAt) {
+        this.fetchedAt = fetchedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
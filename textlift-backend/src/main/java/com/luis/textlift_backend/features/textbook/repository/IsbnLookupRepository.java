@@ -0,0 +1,13 @@
+package com.luis.textlift_backend.features.textbook.repository;
+
+import com.luis.textlift_backend.features.textbook.domain.IsbnLookup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+public interface IsbnLookupRepository extends JpaRepository<IsbnLookup, String> {
+
+    //Transaction-scoped advisory lock per ISBN: one node calls Google while the others wait and
+    //then read the row it wrote
+    @Query(value = "select 1 from pg_advisory_xact_lock(hashtext(:isbn))", nativeQuery = true)
+    Integer lockIsbn(String isbn);
+}
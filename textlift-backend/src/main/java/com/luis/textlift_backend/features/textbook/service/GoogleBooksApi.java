@@ -1,14 +1,14 @@
 package com.luis.textlift_backend.features.textbook.service;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-
+import com.luis.textlift_backend.features.config.metrics.PipelineMetrics;
 import com.luis.textlift_backend.features.textbook.api.dto.GoogleApiResponseDto;
 import com.luis.textlift_backend.features.textbook.api.dto.TextbookLookupDto;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -17,54 +17,69 @@ import java.util.Optional;
 
 @Component
 public class GoogleBooksApi {
-    private final String apiEndpoint = "https://www.googleapis.com/books/v1/volumes?q=isbn:";
+    private final String apiEndpoint;
     private final RestTemplate restTemplate;
+    private final PipelineMetrics metrics;
 
-    public GoogleBooksApi(RestTemplate restTemplate){
+    //base-url points elsewhere only for load tests (the stub server in src/test .../loadtest)
+    public GoogleBooksApi(RestTemplate restTemplate, PipelineMetrics metrics,
+                          @Value("${textlift.books.base-url:https://www.googleapis.com}") String baseUrl){
         this.restTemplate = restTemplate;
+        this.metrics = metrics;
+        this.apiEndpoint = baseUrl + "/books/v1/volumes?q=isbn:";
     }
 
+    //Empty when Google has no volume for the ISBN. A failed lookup (network, timeout, 429/5xx)
+    //throws instead, so callers can tell "not found" from "try again later" and not cache it.
     public Optional<TextbookLookupDto> searchByIsbn(String isbn) {
+        GoogleApiResponseDto body;
+        Timer.Sample sample = metrics.start();
         try {
-            GoogleApiResponseDto body =
-                    restTemplate.getForObject(apiEndpoint + isbn, GoogleApiResponseDto.class);
-
-            if (body == null || body.items() == null || body.items().isEmpty()) {
-                return Optional.empty();
+            body = restTemplate.getForObject(apiEndpoint + isbn, GoogleApiResponseDto.class);
+        } catch (HttpClientErrorException e) {
+            // Google returns 200 with totalItems=0 a lot, but just in case:
+            // 404/400/etc -> treat as "not found"; rate limiting is a failure, not an answer
+            if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                metrics.stop(sample, "google_books", "rate_limited");
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Google Books rate limited", e);
             }
+            metrics.stop(sample, "google_books", "not_found");
+            return Optional.empty();
+        } catch (RestClientException e) {
+            // Network / timeout / 5xx / parsing issues
+            metrics.stop(sample, "google_books", PipelineMetrics.OUTCOME_ERROR);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Google Books lookup failed", e);
+        }
+        boolean found = body != null && body.items() != null && !body.items().isEmpty();
+        metrics.stop(sample, "google_books", found ? "found" : "not_found");
 
-            GoogleApiResponseDto.Item first = body.items().get(0);
-            GoogleApiResponseDto.VolumeInfo vi = first.volumeInfo();
-            if (vi == null) {
-                return Optional.empty();
-            }
+        if (body == null || body.items() == null || body.items().isEmpty()) {
+            return Optional.empty();
+        }
 
-            String thumbnail = (vi.imageLinks() != null) ? vi.imageLinks().thumbnail() : null;
-            List<String> authors = (vi.authors() != null) ? vi.authors() : List.of();
-            String snippet = (first.searchInfo() != null) ? first.searchInfo().textSnippet() : null;
+        GoogleApiResponseDto.Item first = body.items().get(0);
+        GoogleApiResponseDto.VolumeInfo vi = first.volumeInfo();
+        if (vi == null) {
+            return Optional.empty();
+        }
 
-            TextbookLookupDto dto = new TextbookLookupDto(
-                    first.id(),
-                    vi.title(),
-                    authors,
-                    vi.publisher(),
-                    vi.publishedDate(),
-                    vi.pageCount(),
-                    thumbnail,
-                    vi.description(),
-                    snippet
-            );
+        String thumbnail = (vi.imageLinks() != null) ? vi.imageLinks().thumbnail() : null;
+        List<String> authors = (vi.authors() != null) ? vi.authors() : List.of();
+        String snippet = (first.searchInfo() != null) ? first.searchInfo().textSnippet() : null;
 
-            return Optional.of(dto);
+        TextbookLookupDto dto = new TextbookLookupDto(
+                first.id(),
+                vi.title(),
+                authors,
+                vi.publisher(),
+                vi.publishedDate(),
+                vi.pageCount(),
+                thumbnail,
+                vi.description(),
+                snippet
+        );
 
-        } catch (RestClientResponseException e) {
-            // Google returns 200 with totalItems=0 a lot, but just in case:
-            // 404/400/etc -> treat as "not found"
-            return Optional.empty();
-        } catch (RestClientException e) {
-            // Network / timeout / parsing issues -> also best-effort
-            return Optional.empty();
-        }
+        return Optional.of(dto);
     }
 
 }
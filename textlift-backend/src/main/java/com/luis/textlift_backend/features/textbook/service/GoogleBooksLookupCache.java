@@ -0,0 +1,142 @@
+package com.luis.textlift_backend.features.textbook.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.luis.textlift_backend.features.textbook.api.dto.TextbookLookupDto;
+import com.luis.textlift_backend.features.textbook.domain.IsbnLookup;
+import com.luis.textlift_backend.features.textbook.repository.IsbnLookupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+//Google Books lookups by ISBN, cached in memory and in isbn_lookup_cache. Hits and misses are both
+//cached, misses for less time. Concurrent lookups of one ISBN share a single outbound call: the
+//Caffeine loader is single-flight within a node, and the per-ISBN advisory lock makes other
+//nodes wait for the row instead of calling Google themselves. Failed calls are not cached.
+@Service
+public class GoogleBooksLookupCache {
+    private static final Logger LOG = LoggerFactory.getLogger(GoogleBooksLookupCache.class);
+
+    private final GoogleBooksApi googleBooksApi;
+    private final IsbnLookupRepository lookupRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate lookupTransaction;
+    private final Duration positiveTtl;
+    private final Duration negativeTtl;
+    private final LoadingCache<String, Lookup> cache;
+
+    private record Lookup(Optional<TextbookLookupDto> result, Instant expiresAt) {}
+
+    public GoogleBooksLookupCache(GoogleBooksApi googleBooksApi,
+                                  IsbnLookupRepository lookupRepository,
+                                  ObjectMapper objectMapper,
+                                  TransactionTemplate lookupTransaction,
+                                  @Value("${textlift.books.lookup.positive-ttl:P30D}") Duration positiveTtl,
+                                  @Value("${textlift.books.lookup.negative-ttl:P1D}") Duration negativeTtl,
+                                  @Value("${textlift.books.lookup.max-size:10000}") long maxSize) {
+        this.googleBooksApi = googleBooksApi;
+        this.lookupRepository = lookupRepository;
+        this.objectMapper = objectMapper;
+        //Identification calls this before it locks the document, so the lookup commits on its own
+        //and the row and the advisory lock are released with it, not with the document update
+        this.lookupTransaction = lookupTransaction;
+        this.positiveTtl = positiveTtl;
+        this.negativeTtl = negativeTtl;
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Lookup>() {
+                    @Override
+                    public long expireAfterCreate(String isbn, Lookup lookup, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), lookup.expiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String isbn, Lookup lookup, long currentTime, long currentDuration) {
+                        return expireAfterCreate(isbn, lookup, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String isbn, Lookup lookup, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build(this::load);
+    }
+
+    //Best effort like the plain API call: a failed lookup is logged and reads as "not found"
+    public Optional<TextbookLookupDto> searchByIsbn(String isbn) {
+        try {
+            Lookup lookup = cache.get(isbn);
+            return lookup == null ? Optional.empty() : lookup.result();
+        } catch (RuntimeException e) {
+            LOG.warn("Google Books lookup for {} failed", isbn, e);
+            return Optional.empty();
+        }
+    }
+
+    //Returns null (nothing cached) when Google could not be reached. Nothing may throw out of the
+    //callback, or the caller's transaction it joined would be marked rollback-only.
+    private Lookup load(String isbn) {
+        return lookupTransaction.execute(status -> {
+            lookupRepository.lockIsbn(isbn);
+
+            Instant now = Instant.now();
+            Optional<IsbnLookup> stored = lookupRepository.findById(isbn);
+            if (stored.isPresent() && stored.get().getExpiresAt().isAfter(now)) {
+                Optional<TextbookLookupDto> cached = decode(stored.get());
+                if (cached != null) {
+                    return new Lookup(cached, stored.get().getExpiresAt());
+                }
+            }
+
+            Optional<TextbookLookupDto> result;
+            try {
+                result = googleBooksApi.searchByIsbn(isbn);
+            } catch (RuntimeException e) {
+                LOG.warn("Google Books lookup for {} failed; not caching", isbn, e);
+                return null;
+            }
+
+            IsbnLookup row = stored.orElseGet(IsbnLookup::new);
+            row.setIsbn(isbn);
+            row.setFound(result.isPresent());
+            row.setPayload(result.map(this::encode).orElse(null));
+            row.setFetchedAt(now);
+            row.setExpiresAt(now.plus(result.isPresent() ? positiveTtl : negativeTtl));
+            lookupRepository.save(row);
+            return new Lookup(result, row.getExpiresAt());
+        });
+    }
+
+    private String encode(TextbookLookupDto dto) {
+        try {
+            return objectMapper.writeValueAsString(dto);
+        } catch (JsonProcessingException e) {
+            //Stored without details, so the next lookup of this ISBN fetches it again
+            LOG.warn("Could not serialize lookup result {}", dto.googleVolumeId(), e);
+            return null;
+        }
+    }
+
+    //null when the stored payload cannot be read, so it is fetched again
+    private Optional<TextbookLookupDto> decode(IsbnLookup row) {
+        if (!row.isFound()) return Optional.empty();
+        if (row.getPayload() == null) return null;
+        try {
+            return Optional.of(objectMapper.readValue(row.getPayload(), TextbookLookupDto.class));
+        } catch (JsonProcessingException e) {
+            LOG.warn("Could not read cached lookup for {}", row.getIsbn(), e);
+            return null;
+        }
+    }
+}
@@ -1,83 +1,219 @@
 package com.luis.textlift_backend.features.textbook.service;
 
-import java.util.LinkedHashSet;
 import java.util.Optional;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+//Single pass over the text that finds ISBN candidates and checks them in place, without building
+//intermediate Strings. It accepts exactly what the previous regex did:
+//  (?i)\b(?:isbn(?:-1[03])?\s*[:#]?)?\s*((?:97[89][\s-]?)?\d[\d\s-]{8,16}[\dXx])\b
+//including its greedy/backtracking choice of where a candidate ends, and where scanning resumes
+//after one. The first valid ISBN-13 wins; otherwise the first valid ISBN-10, converted.
 public class IsbnExtractor {
-    private static final Pattern ISBN_CANDIDATE = Pattern.compile(
-            "(?i)\\b(?:isbn(?:-1[03])?\\s*[:#]?)?\\s*(" +
-                    "(?:97[89][\\s-]?)?\\d[\\d\\s-]{8,16}[\\dXx]" +
-            ")\\b"
-    );
-
-    public static Optional<String> extractBestIsbn13(String text) {
-        if (text == null || text.isBlank()) return Optional.empty();
-
-        Set<String> isbn13s = new LinkedHashSet<>();
-        Set<String> isbn10s = new LinkedHashSet<>();
-
-        Matcher m = ISBN_CANDIDATE.matcher(text);
-        while (m.find()) {
-            String raw = m.group(1);
-            String normalized = normalize(raw);
-
-            if (normalized.length() == 13 && isValidIsbn13(normalized)) {
-                isbn13s.add(normalized);
-            } else if (normalized.length() == 10 && isValidIsbn10(normalized)) {
-                isbn10s.add(normalized.toUpperCase());
+    //Bounds of the [\d\s-]{8,16} part of a candidate
+    private static final int MIN_RUN = 8;
+    private static final int MAX_RUN = 16;
+
+    public static Optional<String> extractBestIsbn13(CharSequence text) {
+        if (text == null) return Optional.empty();
+
+        int len = text.length();
+        int isbn10Start = -1;
+        int isbn10End = -1;
+
+        int i = 0;
+        while (i < len) {
+            char c = text.charAt(i);
+            int start = -1;
+            if (isDigit(c)) {
+                if (!isWordBefore(text, i)) start = i;
+            } else if ((c == 'i' || c == 'I') && !isWordBefore(text, i)) {
+                start = afterIsbnLabel(text, i);
+            }
+            if (start < 0) {
+                i++;
+                continue;
             }
-        }
 
-        if (!isbn13s.isEmpty()) return Optional.of(isbn13s.iterator().next());
+            int end = candidateEnd(text, start);
+            if (end < 0) {
+                i++;
+                continue;
+            }
 
-        for (String ten : isbn10s) {
-            String thirteen = isbn10to13(ten);
-            if (isValidIsbn13(thirteen)) return Optional.of(thirteen);
+            int kind = checkCandidate(text, start, end);
+            if (kind == 13) {
+                return Optional.of(digits(text, start, end));
+            }
+            if (kind == 10 && isbn10Start < 0) {
+                isbn10Start = start;
+                isbn10End = end;
+            }
+            //Like Matcher.find, the next attempt starts after the whole candidate
+            i = end;
         }
 
+        if (isbn10Start >= 0) {
+            return Optional.of(isbn10to13(text, isbn10Start, isbn10End));
+        }
         return Optional.empty();
     }
 
-    private static String normalize(String raw) {
-        // Keep digits and X only
-        return raw.replaceAll("[^0-9Xx]", "");
+    //"isbn", optional -10/-13, optional ':' or '#', surrounded by optional whitespace.
+    //Returns where the number must start, or -1 if no digit follows the label.
+    private static int afterIsbnLabel(CharSequence text, int i) {
+        int len = text.length();
+        if (i + 4 > len
+                || !equalsIgnoreCase(text.charAt(i + 1), 's')
+                || !equalsIgnoreCase(text.charAt(i + 2), 'b')
+                || !equalsIgnoreCase(text.charAt(i + 3), 'n')) {
+            return -1;
+        }
+        int p = i + 4;
+        if (p + 2 < len && text.charAt(p) == '-' && text.charAt(p + 1) == '1'
+                && (text.charAt(p + 2) == '0' || text.charAt(p + 2) == '3')) {
+            p += 3;
+        }
+        while (p < len && isSpace(text.charAt(p))) p++;
+        if (p < len && (text.charAt(p) == ':' || text.charAt(p) == '#')) p++;
+        while (p < len && isSpace(text.charAt(p))) p++;
+        return p < len && isDigit(text.charAt(p)) ? p : -1;
     }
 
-    private static boolean isValidIsbn13(String s) {
-        if (s == null || !s.matches("\\d{13}")) return false;
-        int sum = 0;
-        for (int i = 0; i < 13; i++) {
-            int d = s.charAt(i) - '0';
-            sum += (i % 2 == 0) ? d : 3 * d;
+    //Exclusive end of the candidate that starts with the digit at start, or -1. The 978/979
+    //prefix is tried first because it allows a longer candidate, as in the regex.
+    private static int candidateEnd(CharSequence text, int start) {
+        int len = text.length();
+        if (start + 2 < len && text.charAt(start) == '9' && text.charAt(start + 1) == '7'
+                && (text.charAt(start + 2) == '8' || text.charAt(start + 2) == '9')) {
+            int p = start + 3;
+            if (p < len && isRunSeparator(text.charAt(p))) p++;
+            if (p < len && isDigit(text.charAt(p))) {
+                int end = runEnd(text, p + 1);
+                if (end >= 0) return end;
+            }
         }
-        return sum % 10 == 0;
+        return runEnd(text, start + 1);
     }
 
-    private static boolean isValidIsbn10(String s) {
-        if (s == null || !s.matches("\\d{9}[\\dXx]")) return false;
-        int sum = 0;
-        for (int i = 0; i < 10; i++) {
-            char c = s.charAt(i);
-            int d = (c == 'X' || c == 'x') ? 10 : (c - '0');
-            sum += d * (10 - i);
+    //Longest 8..16 chars of digits/whitespace/hyphens from runStart that are followed by a digit
+    //or X that ends a word
+    private static int runEnd(CharSequence text, int runStart) {
+        int len = text.length();
+        int run = 0;
+        while (run <= MAX_RUN && runStart + run < len && isRunChar(text.charAt(runStart + run))) run++;
+
+        for (int k = Math.min(MAX_RUN, run); k >= MIN_RUN; k--) {
+            int last = runStart + k;
+            if (last >= len) continue;
+            char c = text.charAt(last);
+            if ((isDigit(c) || c == 'X' || c == 'x') && !isWordAt(text, last + 1)) {
+                return last + 1;
+            }
         }
-        return sum % 11 == 0;
+        return -1;
     }
 
-    private static String isbn10to13(String isbn10) {
-        String core9 = isbn10.substring(0, 9);
-        String prefix12 = "978" + core9;
+    //13 for a valid ISBN-13, 10 for a valid ISBN-10, 0 otherwise. Both checksums are accumulated
+    //in the same pass over the candidate's digits.
+    private static int checkCandidate(CharSequence text, int start, int end) {
+        int n = 0;
+        int sum13 = 0;
+        int sum10 = 0;
+        boolean checkX = false;
+        for (int p = start; p < end; p++) {
+            char c = text.charAt(p);
+            int d;
+            if (isDigit(c)) {
+                d = c - '0';
+            } else if (c == 'X' || c == 'x') {
+                //Only ever the last character of a candidate
+                d = 10;
+                checkX = true;
+            } else {
+                continue;
+            }
+            if (n >= 13) return 0;
+            sum13 += (n % 2 == 0) ? d : 3 * d;
+            if (n < 10) sum10 += d * (10 - n);
+            n++;
+        }
+        if (n == 13 && !checkX && sum13 % 10 == 0) return 13;
+        if (n == 10 && sum10 % 11 == 0) return 10;
+        return 0;
+    }
+
+    private static String digits(CharSequence text, int start, int end) {
+        StringBuilder sb = new StringBuilder(13);
+        for (int p = start; p < end; p++) {
+            char c = text.charAt(p);
+            if (isDigit(c)) sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static String isbn10to13(CharSequence text, int start, int end) {
+        StringBuilder sb = new StringBuilder(13).append("978");
+        for (int p = start; p < end && sb.length() < 12; p++) {
+            char c = text.charAt(p);
+            if (isDigit(c)) sb.append(c);
+        }
 
         int sum = 0;
         for (int i = 0; i < 12; i++) {
-            int d = prefix12.charAt(i) - '0';
+            int d = sb.charAt(i) - '0';
             sum += (i % 2 == 0) ? d : 3 * d;
         }
         int check = (10 - (sum % 10)) % 10;
-        return prefix12 + check;
+        return sb.append((char) ('0' + check)).toString();
     }
 
+    //\b semantics of java.util.regex: ASCII word characters, and a non-spacing mark counts as
+    //part of the word its base character belongs to
+    private static boolean isWordBefore(CharSequence text, int i) {
+        if (i <= 0) return false;
+        int ch = Character.codePointBefore(text, i);
+        return isAsciiWord(ch)
+                || (Character.getType(ch) == Character.NON_SPACING_MARK && hasBaseCharacter(text, i - 1));
+    }
+
+    private static boolean isWordAt(CharSequence text, int i) {
+        if (i >= text.length()) return false;
+        int ch = Character.codePointAt(text, i);
+        return isAsciiWord(ch)
+                || (Character.getType(ch) == Character.NON_SPACING_MARK && hasBaseCharacter(text, i));
+    }
+
+    private static boolean hasBaseCharacter(CharSequence text, int i) {
+        for (int x = i; x >= 0; x--) {
+            int ch = Character.codePointAt(text, x);
+            if (Character.isLetterOrDigit(ch)) return true;
+            if (Character.getType(ch) == Character.NON_SPACING_MARK) continue;
+            return false;
+        }
+        return false;
+    }
+
+    private static boolean isAsciiWord(int ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || isDigit(ch) || ch == '_';
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    //\s without UNICODE_CHARACTER_CLASS
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isRunSeparator(char c) {
+        return isSpace(c) || c == '-';
+    }
+
+    private static boolean isRunChar(char c) {
+        return isDigit(c) || isRunSeparator(c);
+    }
+
+    private static boolean equalsIgnoreCase(char c, char lower) {
+        return c == lower || c == lower - ('a' - 'A');
+    }
 }
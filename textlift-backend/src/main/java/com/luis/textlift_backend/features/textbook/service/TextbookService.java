@@ -1,17 +1,24 @@
 package com.luis.textlift_backend.features.textbook.service;
 
+import com.luis.textlift_backend.features.annotation.domain.Annotation;
 import com.luis.textlift_backend.features.document.domain.Document;
 import com.luis.textlift_backend.features.document.domain.DocumentStatus;
 import com.luis.textlift_backend.features.document.repository.DocumentRepository;
+import com.luis.textlift_backend.features.document.service.events.DocumentStatusChangedEvent;
+import com.luis.textlift_backend.features.storage.service.BlobKeys;
+import com.luis.textlift_backend.features.storage.service.BlobStore;
+import com.luis.textlift_backend.features.storage.service.CompressedText;
 import com.luis.textlift_backend.features.textbook.domain.Textbook;
 import com.luis.textlift_backend.features.textbook.repository.TextbookRepository;
 import com.luis.textlift_backend.features.textbook.service.events.TextbookIdentifiedEvent;
-import jakarta.transaction.Transactional;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -22,29 +29,72 @@ public class TextbookService {
     private final TextbookRepository textbookRepository;
     private final DocumentRepository documentRepository;
     private final ApplicationEventPublisher events;
-    private final GoogleBooksApi googleBooksApi;
+    private final GoogleBooksLookupCache googleBooksLookup;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
 
     public TextbookService(TextbookRepository textbookRepository,
                            DocumentRepository documentRepository,
                            ApplicationEventPublisher events,
-                           GoogleBooksApi googleBooksApi) {
+                           GoogleBooksLookupCache googleBooksLookup,
+                           BlobStore blobStore,
+                           TransactionTemplate transactionTemplate) {
         this.textbookRepository = textbookRepository;
         this.documentRepository = documentRepository;
         this.events = events;
-        this.googleBooksApi = googleBooksApi;
+        this.googleBooksLookup = googleBooksLookup;
+        this.blobStore = blobStore;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    @Transactional
+    //Runs in three steps so the document row is only locked for the final, quick update:
+    //find the ISBN, resolve the textbook (and call Google Books) unlocked, then link under the lock.
     public void identifyTextbook(UUID documentId) {
-        Document documentObj = documentRepository.findById(documentId)
+        Document found = documentRepository.findById(documentId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Document not found"));
 
+        // Extract ISBN from the front matter (early identification) or the start of the full text
+        Optional<String> isbn13 = findIsbn(found);
+        if (isbn13.isEmpty() && !found.isTextReady()) {
+            //The ISBN page may be past the front matter; markTextReady queues identification again
+            //from the full text, so don't settle for a placeholder yet
+            return;
+        }
+
+        // Given the textbook (new or from DB) we want to call Google Books API if the metadata fields
+        // (title, authors, edition) are blank since that implies we haven't processed this before
+        Textbook resolved = isbn13.map(this::resolveTextbook).orElse(null);
+        if (resolved != null && needsMetadata(resolved)) {
+            googleBooksLookup.searchByIsbn(isbn13.get()).ifPresent(dto -> {
+                if (isBlank(resolved.getTextbookName()) && !isBlank(dto.title())) {
+                    resolved.setTextbookName(dto.title());
+                }
+                if ((resolved.getAuthors() == null || resolved.getAuthors().isEmpty())
+                        && dto.authors() != null && !dto.authors().isEmpty()) {
+                    resolved.setAuthors(dto.authors());
+                }
+            });
+            textbookRepository.save(resolved);
+        }
+
+        transactionTemplate.executeWithoutResult(tx -> linkTextbook(documentId, resolved));
+    }
 
-        // Extract ISBN, fall back to placeholder textbook if missing
-        Optional<String> frontText = loadFrontMatterText(documentObj);
-        Optional<String> isbn13 = frontText.flatMap(IsbnExtractor::extractBestIsbn13);
-        Textbook textbook = resolveOrCreateTextbook(isbn13);
+    //Locked: text extraction may finish concurrently and must see whether we queued annotation
+    private void linkTextbook(UUID documentId, Textbook resolved) {
+        Document documentObj = documentRepository.lockById(documentId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Document not found"));
+        //A second identification job (queued by markTextReady) lost the race to the first
+        if (documentObj.getTextbook() != null && documentObj.getStatus() != DocumentStatus.READY
+                && documentObj.getStatus() != DocumentStatus.TEXTBOOK_SCANNING) {
+            return;
+        }
 
+        //No ISBN anywhere: fall back to a placeholder textbook
+        Textbook textbook = resolved != null
+                ? textbookRepository.findById(resolved.getId()).orElseThrow(() ->
+                        new ResponseStatusException(HttpStatus.NOT_FOUND, "Textbook not found"))
+                : createPlaceholder();
 
         // Link the document to the textbook
         if (documentObj.getTextbook() == null || !documentObj.getTextbook().getId().equals(textbook.getId())) {
@@ -52,60 +102,92 @@ public class TextbookService {
         }
         if (documentObj.getStatus() != DocumentStatus.TEXTBOOK_IDENTIFIED) {
             documentObj.setStatus(DocumentStatus.TEXTBOOK_IDENTIFIED);
+            events.publishEvent(new DocumentStatusChangedEvent(documentObj.getId(), DocumentStatus.TEXTBOOK_IDENTIFIED));
         }
         documentRepository.save(documentObj); // optional; doc is managed in txn
 
-        // Given the textbook (new or from DB)
-        // we want to call Google Books API if the metadata fields (title, authors, edition)
-        // are blank since that implies we haven't processed this before
-        if(isbn13.isPresent()
-                && (textbook.getTextbookName() == null || textbook.getTextbookName().isBlank()
-                || textbook.getEdition() == null || textbook.getEdition().isBlank()
-                || textbook.getAuthors() == null || textbook.getAuthors().isEmpty())){
-            googleBooksApi.searchByIsbn(isbn13.get()).ifPresent(dto -> {
-                if (isBlank(textbook.getTextbookName()) && !isBlank(dto.title())) {
-                    textbook.setTextbookName(dto.title());
-                }
-                if ((textbook.getAuthors() == null || textbook.getAuthors().isEmpty())
-                        && dto.authors() != null && !dto.authors().isEmpty()) {
-                    textbook.setAuthors(dto.authors());
-                }
-            });
-
-            textbookRepository.save(textbook);
+        //Lastly, we want to only kickstart an annotation generation if this textbook hasn't already had annotation.
+        //An unfinished one (interrupted run) is resumed from its checkpoint by the annotation job
+        Annotation annotation = textbook.getAnnotation();
+        //Annotation needs the full text; if extraction is still running it queues annotation itself when it finishes
+        if(annotation == null || !annotation.isCompleted()){
+            if(documentObj.isTextReady()){
+                events.publishEvent(new TextbookIdentifiedEvent(textbook.getId(), documentObj.getId()));
+            }
+        } else {
+            documentObj.setStatus(DocumentStatus.ANNOTATIONS_READY);
+            events.publishEvent(new DocumentStatusChangedEvent(documentObj.getId(), DocumentStatus.ANNOTATIONS_READY));
         }
+    }
 
-        //Lastly, we want to only kickstart an annotation generation if this textbook hasn't already had annotation
-        if(textbook.getAnnotation() == null){
-            events.publishEvent(new TextbookIdentifiedEvent(textbook.getId(), documentObj.getId()));
-        }
+    private static boolean needsMetadata(Textbook textbook) {
+        return textbook.getTextbookName() == null || textbook.getTextbookName().isBlank()
+                || textbook.getEdition() == null || textbook.getEdition().isBlank()
+                || textbook.getAuthors() == null || textbook.getAuthors().isEmpty();
     }
 
-    private Textbook resolveOrCreateTextbook(Optional<String> isbn13) {
-        if (isbn13.isPresent()) {
-            return textbookRepository.findByIsbn(isbn13.get())
-                    .orElseGet(() -> {
-                        Textbook created = new Textbook();
-                        created.setIsbn(isbn13.get());
-                        return textbookRepository.save(created);
-                    });
-        }
+    public void deleteFrontMatterText(UUID documentId) {
+        documentRepository.findById(documentId).ifPresent(doc -> {
+            try { blobStore.delete(BlobKeys.frontMatter(doc.getHash())); } catch (IOException ignored) {}
+        });
+    }
+
+    private Textbook resolveTextbook(String isbn13) {
+        return textbookRepository.findByIsbn(isbn13)
+                .orElseGet(() -> {
+                    Textbook created = new Textbook();
+                    created.setIsbn(isbn13);
+                    return textbookRepository.save(created);
+                });
+    }
 
+    private Textbook createPlaceholder() {
         Textbook placeholder = new Textbook();
         placeholder.setIsbn("UNKNOWN_ISBN_" + UUID.randomUUID());
         placeholder.setTextbookName("UNKNOWN_TEXTBOOK");
         return textbookRepository.save(placeholder);
     }
 
-    private Optional<String> loadFrontMatterText(Document doc) {
-        String path = doc.getFilePath();
-        if (path == null || path.isBlank()) return Optional.empty();
+    //The front matter first when early identification stripped it, then the start of the full text
+    //once it is extracted: the ISBN page is not always within the first and last pages
+    private Optional<String> findIsbn(Document doc) {
+        String frontMatter = BlobKeys.frontMatter(doc.getHash());
+        boolean hasFrontMatter;
+        try {
+            hasFrontMatter = blobStore.exists(frontMatter);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Blob store unavailable", e);
+        }
+        if (!hasFrontMatter && !doc.isTextReady()) {
+            //Retried until either blob exists
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Document text is not extracted yet");
+        }
+
+        Optional<String> isbn13 = Optional.empty();
+        if (hasFrontMatter) {
+            isbn13 = readStart(frontMatter).flatMap(IsbnExtractor::extractBestIsbn13);
+        }
+        if (isbn13.isEmpty() && doc.isTextReady()) {
+            isbn13 = readStart(doc.getBlobKey()).flatMap(IsbnExtractor::extractBestIsbn13);
+        }
+        return isbn13;
+    }
+
+    //The first 200k chars of a text blob
+    private Optional<String> readStart(String key) {
+        if (key == null || key.isBlank()) return Optional.empty();
 
         int limitChars = 200_000;
         char[] buf = new char[limitChars];
 
-        try (var reader = java.nio.file.Files.newBufferedReader(java.nio.file.Path.of(path))) {
-            int read = reader.read(buf);
+        //Only the blocks covering the first limitChars get inflated. A blob stream can return less
+        //than asked per read, so keep reading up to the limit
+        try (Reader reader = CompressedText.reader(blobStore, key)) {
+            int read = 0;
+            int r;
+            while (read < limitChars && (r = reader.read(buf, read, limitChars - read)) != -1) {
+                read += r;
+            }
             if (read <= 0) return Optional.empty();
             return Optional.of(new String(buf, 0, read));
         } catch (Exception e) {
@@ -7,6 +7,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.UUID;
 
 @RestController
@@ -37,6 +38,33 @@ public class UploadController {
         return ResponseEntity.status(200).body(response);
     }
 
+    //Resumable alternative to /file for large scans: PUT the file in sequential chunks.
+    //Upload-Offset is the byte offset the chunk starts at, Upload-Checksum its SHA-256 (hex)
+    @PutMapping(value = "/{uploadId}/chunks/{chunkIndex}", consumes = "application/octet-stream")
+    public ResponseEntity<ChunkProgressResponseDto> uploadChunk(@PathVariable UUID uploadId,
+                                                                @PathVariable int chunkIndex,
+                                                                @RequestHeader("Upload-Offset") long offset,
+                                                                @RequestHeader(value = "Upload-Checksum", required = false) String checksum,
+                                                                InputStream body){
+        ChunkProgressResponseDto response = this.uploadService.uploadChunk(uploadId, chunkIndex, offset, checksum, body);
+        return ResponseEntity.status(200).body(response);
+    }
+
+    //After a dropped connection the client asks where to resume from
+    @GetMapping("/{uploadId}/chunks")
+    public ResponseEntity<ChunkProgressResponseDto> getChunkProgress(@PathVariable UUID uploadId){
+        ChunkProgressResponseDto response = this.uploadService.getChunkProgress(uploadId);
+        return ResponseEntity.status(200).body(response);
+    }
+
+    //Verifies the assembled chunks against the declared hash; equivalent to a finished /file upload
+    @PostMapping("/{uploadId}/chunks/complete")
+    public ResponseEntity<UploadResponseDto> completeChunkedUpload(@PathVariable UUID uploadId,
+                                                                   @RequestParam(value = "fileName", defaultValue = "upload.pdf") String fileName){
+        UploadResponseDto response = this.uploadService.completeChunkedUpload(uploadId, fileName);
+        return ResponseEntity.status(200).body(response);
+    }
+
     //Lastly, we can create a finalized endpoint, which creates a document obj
     //and maps it to the uploadID. Now in the document side, they can process the
     //actual document
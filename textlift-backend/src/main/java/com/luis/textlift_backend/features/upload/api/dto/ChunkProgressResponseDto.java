@@ -0,0 +1,14 @@
+package com.luis.textlift_backend.features.upload.api.dto;
+
+import com.luis.textlift_backend.features.upload.domain.UploadStatus;
+
+import java.util.UUID;
+
+//Tells the client where to resume: the next chunk index and the byte offset it must start at
+public record ChunkProgressResponseDto(
+        UUID uploadId,
+        UploadStatus status,
+        int nextChunk,
+        long receivedBytes,
+        Long sizeBytes
+){}
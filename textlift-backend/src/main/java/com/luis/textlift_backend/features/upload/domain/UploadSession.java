@@ -28,6 +28,16 @@ public class UploadSession {
     @Column
     private String hash;
 
+    //Chunked uploads: declared size, and the contiguous byte range [0, receivedBytes) already on disk
+    @Column
+    private Long sizeBytes;
+
+    @Column(nullable = false)
+    private long receivedBytes;
+
+    @Column(nullable = false)
+    private int receivedChunks;
+
     public void setUploadStatus(UploadStatus status){
         this.uploadStatus = status;
     }
@@ -55,4 +65,22 @@ public class UploadSession {
     public User getUser() {
         return user;
     }
+    public Long getSizeBytes() {
+        return sizeBytes;
+    }
+    public void setSizeBytes(Long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+    public void setReceivedBytes(long receivedBytes) {
+        this.receivedBytes = receivedBytes;
+    }
+    public int getReceivedChunks() {
+        return receivedChunks;
+    }
+    public void setReceivedChunks(int receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
 }
@@ -6,5 +6,6 @@ public enum UploadStatus {
     PENDING, //Record created; no bytes sent
     FAILED,
     PREMATURE_HIT,
-    REJECTED_UNSAFE
+    REJECTED_UNSAFE,
+    SCANNING //Bytes stored; waiting on the VirusTotal verdict
 }
@@ -0,0 +1,59 @@
+package com.luis.textlift_backend.features.upload.domain;
+
+import com.luis.textlift_backend.features.upload.service.VirusTotalApi;
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+//Cached VirusTotal verdict for one file hash. RETRY_LATER is never stored.
+@Entity
+@Table(
+        name = "virus_scan_verdict"
+)
+public class VirusScanVerdict {
+    @Id
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(nullable = false, length = 16)
+    @Enumerated(EnumType.STRING)
+    private VirusTotalApi.Verdict verdict;
+
+    @Column(nullable = false)
+    private Instant checkedAt;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public VirusTotalApi.Verdict getVerdict() {
+        return verdict;
+    }
+
+    public void setVerdict(VirusTotalApi.Verdict verdict) {
+        this.verdict = verdict;
+    }
+
+    public Instant getCheckedAt() {
+        return checkedAt;
+    }
+
+    public void setCheckedAt(Instant checkedAt) {
+        this.checkedAt = checkedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
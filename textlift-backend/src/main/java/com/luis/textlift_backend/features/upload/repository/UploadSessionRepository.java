@@ -3,7 +3,9 @@ package com.luis.textlift_backend.features.upload.repository;
 import com.luis.textlift_backend.features.upload.domain.UploadSession;
 import com.luis.textlift_backend.features.upload.domain.UploadStatus;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
@@ -19,8 +21,21 @@ public interface UploadSessionRepository extends JpaRepository<UploadSession, UU
     //Ensures that users can only finalize/upload file/or check the status of an upload if they own the upload session
     Optional<UploadSession> findByIdAndUser_Id(UUID id, UUID userId);
 
+    //Row lock so two chunk requests for the same upload cannot both append at the same offset
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select us from UploadSession us where us.id = :id and us.user.id = :userId")
+    Optional<UploadSession> lockByIdAndUserId(UUID id, UUID userId);
+
+    //Same lock for the scan job, which runs without a user; serializes the verdict with finalizeUpload
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select us from UploadSession us where us.id = :id")
+    Optional<UploadSession> lockById(UUID id);
+
     boolean existsByUser_IdAndHash(UUID userId, String hash);
 
+    //Other uploads of the same file still waiting on their own scan
+    boolean existsByHashAndUploadStatusAndIdNot(String hash, UploadStatus status, UUID id);
+
     void deleteById(UUID id);
 
     long deleteByUser_IdAndHash(UUID userId, String hash);
@@ -0,0 +1,25 @@
+package com.luis.textlift_backend.features.upload.repository;
+
+import com.luis.textlift_backend.features.upload.domain.VirusScanVerdict;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface VirusScanVerdictRepository extends JpaRepository<VirusScanVerdict, String> {
+
+    @Query("select v from VirusScanVerdict v where v.sha256 = :sha256 and v.expiresAt > :now")
+    Optional<VirusScanVerdict> findFresh(String sha256, Instant now);
+
+    //Two uploads of the same file can be scanned at once; the later verdict replaces the earlier one
+    @Modifying
+    @Query(value = """
+            insert into virus_scan_verdict (sha256, verdict, checked_at, expires_at)
+            values (:sha256, :verdict, :checkedAt, :expiresAt)
+            on conflict (sha256) do update
+            set verdict = excluded.verdict, checked_at = excluded.checked_at, expires_at = excluded.expires_at
+            """, nativeQuery = true)
+    int upsert(String sha256, String verdict, Instant checkedAt, Instant expiresAt);
+}
@@ -0,0 +1,76 @@
+package com.luis.textlift_backend.features.upload.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+//Streams an upload to disk in a single pass. While the bytes are being written we
+//hash them, check the %PDF- magic bytes and enforce the size limit, so the file
+//never has to be re-opened and re-read to validate it.
+public final class PdfIngestWriter {
+    private static final byte[] PDF_MAGIC = {'%', 'P', 'D', 'F', '-'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public record Result(long bytesWritten, String sha256) {}
+
+    private PdfIngestWriter() {}
+
+    public static Result ingest(InputStream in, Path target, long maxBytes) throws IOException {
+        MessageDigest md = newSha256();
+        byte[] buf = new byte[BUFFER_SIZE];
+        long total = 0;
+
+        //Check the header before opening the target, so a non-PDF never creates or truncates it
+        byte[] head = in.readNBytes(PDF_MAGIC.length);
+        if (!isPdfHeader(head)) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Not a PDF");
+        }
+
+        try (OutputStream out = Files.newOutputStream(target,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            md.update(head);
+            out.write(head);
+            total += head.length;
+
+            int r;
+            while ((r = in.read(buf)) != -1) {
+                total += r;
+                //Bail out as soon as we cross the limit rather than after the whole body arrived
+                if (total > maxBytes) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "File is too large...");
+                }
+                md.update(buf, 0, r);
+                out.write(buf, 0, r);
+            }
+        }
+
+        return new Result(total, HexFormat.of().formatHex(md.digest()));
+    }
+
+    static boolean isPdfHeader(byte[] head) {
+        if (head.length < PDF_MAGIC.length) return false;
+        for (int i = 0; i < PDF_MAGIC.length; i++) {
+            if (head[i] != PDF_MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Hash algorithm unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.luis.textlift_backend.features.upload.service;
+
+import com.luis.textlift_backend.features.document.domain.Document;
+import com.luis.textlift_backend.features.document.domain.DocumentStatus;
+import com.luis.textlift_backend.features.document.repository.DocumentRepository;
+import com.luis.textlift_backend.features.document.service.events.DocumentQueuedEvent;
+import com.luis.textlift_backend.features.document.service.events.DocumentStatusChangedEvent;
+import com.luis.textlift_backend.features.storage.service.BlobKeys;
+import com.luis.textlift_backend.features.storage.service.BlobStore;
+import com.luis.textlift_backend.features.upload.domain.UploadSession;
+import com.luis.textlift_backend.features.upload.domain.UploadStatus;
+import com.luis.textlift_backend.features.upload.domain.VirusScanVerdict;
+import com.luis.textlift_backend.features.upload.repository.UploadSessionRepository;
+import com.luis.textlift_backend.features.upload.repository.VirusScanVerdictRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+//VirusTotal stage of the upload: runs as a SCAN_UPLOAD pipeline job once the bytes are on disk,
+//so the upload request never waits on (or fails because of) the VirusTotal API.
+@Service
+public class UploadScanService {
+    private static final Logger LOG = LoggerFactory.getLogger(UploadScanService.class);
+
+    private final UploadSessionRepository uploadRepo;
+    private final DocumentRepository documentRepo;
+    private final VirusScanVerdictRepository verdictRepo;
+    private final VirusTotalApi virusTotalApi;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher events;
+    private final BlobStore blobStore;
+    private final Duration safeTtl;
+    private final Duration unsafeTtl;
+
+    public UploadScanService(UploadSessionRepository uploadRepo,
+                             DocumentRepository documentRepo,
+                             VirusScanVerdictRepository verdictRepo,
+                             VirusTotalApi virusTotalApi,
+                             TransactionTemplate transactionTemplate,
+                             ApplicationEventPublisher events,
+                             BlobStore blobStore,
+                             @Value("${textlift.virustotal.verdict-ttl.safe:P7D}") Duration safeTtl,
+                             @Value("${textlift.virustotal.verdict-ttl.unsafe:P1D}") Duration unsafeTtl) {
+        this.uploadRepo = uploadRepo;
+        this.documentRepo = documentRepo;
+        this.verdictRepo = verdictRepo;
+        this.virusTotalApi = virusTotalApi;
+        this.transactionTemplate = transactionTemplate;
+        this.events = events;
+        this.blobStore = blobStore;
+        this.safeTtl = safeTtl;
+        this.unsafeTtl = unsafeTtl;
+    }
+
+    public Optional<VirusTotalApi.Verdict> cachedVerdict(String sha256) {
+        return verdictRepo.findFresh(sha256, Instant.now()).map(VirusScanVerdict::getVerdict);
+    }
+
+    //Pipeline entry point. RETRY_LATER surfaces as a 503 so the worker retries with backoff.
+    public void scan(UUID uploadId) {
+        UploadSession session = uploadRepo.findById(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found"));
+        if (session.getUploadStatus() != UploadStatus.SCANNING) return;
+
+        VirusTotalApi.Verdict verdict = cachedVerdict(session.getHash()).orElse(null);
+        if (verdict == null) {
+            VirusTotalApi.Result checked = virusTotalApi.check(session.getHash());
+            verdict = checked.verdict();
+            if (verdict == VirusTotalApi.Verdict.RETRY_LATER) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "VirusTotal unavailable; retrying later");
+            }
+            //Only a real analysis is cached; an UNSAFE from an error response only rejects this upload
+            if (checked.analyzed()) {
+                storeVerdict(session.getHash(), verdict);
+            }
+        }
+
+        VirusTotalApi.Verdict result = verdict;
+        transactionTemplate.executeWithoutResult(status -> applyVerdict(uploadId, result));
+    }
+
+    //Called when the scan job is dead: the upload can't be verified, so it is failed like any other
+    //bad upload. The blob stays; it is shared with any other upload of the same file.
+    //So is the document: while another upload of it is still being scanned, that scan decides it.
+    public void scanAbandoned(UUID uploadId) {
+        uploadRepo.lockById(uploadId).ifPresent(session -> {
+            if (session.getUploadStatus() != UploadStatus.SCANNING) return;
+            session.setUploadStatus(UploadStatus.FAILED);
+            uploadRepo.save(session);
+            //Document row lock first, so two uploads of it abandoned at once cannot each leave it to the other
+            Optional<Document> locked = documentRepo.findByHash(session.getHash())
+                    .flatMap(doc -> documentRepo.lockById(doc.getId()));
+            if (!uploadRepo.existsByHashAndUploadStatusAndIdNot(session.getHash(), UploadStatus.SCANNING, uploadId)) {
+                locked.ifPresent(this::failScanningDocument);
+            }
+        });
+    }
+
+    private void storeVerdict(String sha256, VirusTotalApi.Verdict verdict) {
+        Instant now = Instant.now();
+        Duration ttl = verdict == VirusTotalApi.Verdict.SAFE ? safeTtl : unsafeTtl;
+        transactionTemplate.executeWithoutResult(status ->
+                verdictRepo.upsert(sha256, verdict.name(), now, now.plus(ttl)));
+    }
+
+    //Under the session lock, so it is ordered with finalizeUpload: either finalize sees UPLOADED, or
+    //it has already created the document in SCANNING and this releases it into the pipeline
+    private void applyVerdict(UUID uploadId, VirusTotalApi.Verdict verdict) {
+        UploadSession session = uploadRepo.lockById(uploadId).orElse(null);
+        if (session == null || session.getUploadStatus() != UploadStatus.SCANNING) return;
+
+        if (verdict == VirusTotalApi.Verdict.UNSAFE) {
+            LOG.warn("Upload {} rejected by VirusTotal", uploadId);
+            session.setUploadStatus(UploadStatus.REJECTED_UNSAFE);
+            uploadRepo.save(session);
+            documentRepo.findByHash(session.getHash()).ifPresent(this::failScanningDocument);
+            deleteBlob(session.getHash());
+            return;
+        }
+
+        session.setUploadStatus(UploadStatus.UPLOADED);
+        uploadRepo.save(session);
+        documentRepo.findByHash(session.getHash())
+                .filter(doc -> doc.getStatus() == DocumentStatus.SCANNING)
+                .ifPresent(doc -> {
+                    doc.setStatus(DocumentStatus.READY);
+                    documentRepo.save(doc);
+                    events.publishEvent(new DocumentStatusChangedEvent(doc.getId(), DocumentStatus.READY));
+                    events.publishEvent(new DocumentQueuedEvent(doc.getId()));
+                });
+    }
+
+    private void failScanningDocument(Document doc) {
+        if (doc.getStatus() != DocumentStatus.SCANNING) return;
+        doc.setStatus(DocumentStatus.FAILED_TO_GENERATE);
+        documentRepo.save(doc);
+        events.publishEvent(new DocumentStatusChangedEvent(doc.getId(), DocumentStatus.FAILED_TO_GENERATE));
+    }
+
+    private void deleteBlob(String hash) {
+        try {
+            blobStore.delete(BlobKeys.pdf(hash));
+        } catch (IOException e) {
+            LOG.warn("Could not delete rejected blob {}", hash, e);
+        }
+    }
+}
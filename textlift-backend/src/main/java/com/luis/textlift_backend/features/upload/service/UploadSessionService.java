@@ -1,79 +1,110 @@
 package com.luis.textlift_backend.features.upload.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.luis.textlift_backend.features.auth.domain.User;
+import com.luis.textlift_backend.features.auth.service.CurrentUser;
 import com.luis.textlift_backend.features.document.domain.Document;
 import com.luis.textlift_backend.features.document.domain.DocumentStatus;
 import com.luis.textlift_backend.features.document.repository.DocumentRepository;
 import com.luis.textlift_backend.features.document.service.events.DocumentQueuedEvent;
+import com.luis.textlift_backend.features.pipeline.service.PipelineBacklog;
+import com.luis.textlift_backend.features.storage.service.BlobKeys;
+import com.luis.textlift_backend.features.storage.service.BlobStore;
 import com.luis.textlift_backend.features.upload.api.dto.*;
 import com.luis.textlift_backend.features.upload.domain.UploadMode;
 import com.luis.textlift_backend.features.upload.domain.UploadSession;
 import com.luis.textlift_backend.features.upload.domain.UploadStatus;
 import com.luis.textlift_backend.features.upload.repository.UploadSessionRepository;
+import com.luis.textlift_backend.features.upload.service.events.UploadScanRequestedEvent;
 import com.luis.textlift_backend.features.auth.repository.UserRepository;
 import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.*;
 
 @Service
 public class UploadSessionService {
+    private static final long MAX_UPLOAD_BYTES = 25L * 1024 * 1024;
+    private static final long MAX_CHUNKED_UPLOAD_BYTES = 250_000_000L;
 
     private final UploadSessionRepository uploadRepo;
     private final DocumentRepository documentRepo;
     private final ApplicationEventPublisher events;
     private final UserRepository userRepository;
-    private final VirusTotalApi virusTotalApi;
+    private final UploadScanService uploadScanService;
+    private final PipelineBacklog pipelineBacklog;
+    private final TransactionTemplate transactionTemplate;
+    private final BlobStore blobStore;
+    //Node-local staging for uploads in flight; a verified file is moved into the blob store
+    private final Path stagingDir;
+    private final long maxChunkBytes;
+    //SHA-256 of each chunked upload's bytes so far, extended as chunks are appended, so completing
+    //the upload does not re-read the whole file. Lost on restart (or evicted for an abandoned
+    //upload); completion then falls back to hashing the assembled file.
+    private final Cache<UUID, RunningHash> runningHashes = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofDays(1))
+            .maximumSize(10_000)
+            .build();
+
+    private record RunningHash(long bytes, MessageDigest digest) {}
 
     public UploadSessionService(UploadSessionRepository uploadRepo,
                                 DocumentRepository documentRepo,
                                 ApplicationEventPublisher events,
                                 UserRepository userRepository,
-                                VirusTotalApi virusTotalApi){
+                                UploadScanService uploadScanService,
+                                PipelineBacklog pipelineBacklog,
+                                TransactionTemplate transactionTemplate,
+                                BlobStore blobStore,
+                                @Value("${textlift.storage.work-dir:/var/lib/textlift/work}") Path workDir,
+                                @Value("${textlift.upload.max-chunk-bytes:8388608}") long maxChunkBytes){
         this.uploadRepo = uploadRepo;
         this.documentRepo = documentRepo;
         this.events = events;
         this.userRepository = userRepository;
-        this.virusTotalApi = virusTotalApi;
+        this.uploadScanService = uploadScanService;
+        this.pipelineBacklog = pipelineBacklog;
+        this.transactionTemplate = transactionTemplate;
+        this.blobStore = blobStore;
+        this.stagingDir = workDir.resolve("uploads");
+        this.maxChunkBytes = maxChunkBytes;
     }
 
     public CreateUploadResponseDto createUpload(CreateUploadDto req){
         //Check business rules
-        if(req.sizeBytes() > 250000000){
+        if(req.sizeBytes() > MAX_CHUNKED_UPLOAD_BYTES){
             throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "File is too large...");
         }
 
 
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() ->
-                        new ResponseStatusException(
-                                HttpStatus.NOT_FOUND,
-                                "Could not find user!!!"
-                        ));
+        //The principal already carries the id, so a reference is enough to link the session
+        UUID userId = CurrentUser.id();
+        User user = userRepository.getReferenceById(userId);
 
         //First, we want to check for any existing in-progress uploads
         //of the same file that from the same user
         //(We cannot safely globally dedupe without post-processing)
         Optional<UploadSession> existingUpload =
                 uploadRepo.findFirstByUser_IdAndHashAndUploadStatusIn(
-                        user.getId(),
+                        userId,
                         req.hash(),
-                        List.of(UploadStatus.PENDING, UploadStatus.UPLOADING)
+                        List.of(UploadStatus.PENDING, UploadStatus.UPLOADING, UploadStatus.SCANNING)
                 );
 
         //If an upload by this user exists, we simply return the details of that upload
@@ -114,6 +145,7 @@ public class UploadSessionService {
             session.setUser(user);
             session.setUploadStatus(UploadStatus.PENDING);
             session.setHash(req.hash());
+            session.setSizeBytes(req.sizeBytes());
 
             //Add to table
             UploadSession saved = uploadRepo.save(session);
@@ -122,9 +154,9 @@ public class UploadSessionService {
     }
 
     public UploadResponseDto uploadFile(UUID uploadId, MultipartFile file){
-        User user = currentUser();
+        UUID userId = CurrentUser.id();
         //We want to load the upload session as long as the current request is by the user that owns it
-        UploadSession session = uploadRepo.findByIdAndUser_Id(uploadId, user.getId())
+        UploadSession session = uploadRepo.findByIdAndUser_Id(uploadId, userId)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found"));
 
         if(session.getUploadStatus() != UploadStatus.PENDING){
@@ -134,52 +166,28 @@ public class UploadSessionService {
         //Update the session status
         session.setUploadStatus(UploadStatus.UPLOADING);
 
-        //Generate a temp file path and write the directory to host
-        Path dir = Path.of("/tmp/textlift/uploads/");
-
-        //Specify .part for file uploading, then final filename
-        Path finalPath = dir.resolve(uploadId + ".pdf");
-        Path partPath = dir.resolve(uploadId + ".pdf.part");
+        //Stage the upload as a .part file; once verified it moves into the blob store
+        Path partPath = stagingDir.resolve(uploadId + ".pdf.part");
         try{
-            Files.createDirectories(dir);
+            Files.createDirectories(stagingDir);
             try(InputStream in = file.getInputStream()){
                 if(file.isEmpty()){
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File is empty!!!");
                 }
-                if(file.getSize() > 25L * 1024 * 1024){
+                if(file.getSize() > MAX_UPLOAD_BYTES){
                     throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "File is too large...");
                 }
 
-                Files.copy(in, partPath, StandardCopyOption.REPLACE_EXISTING);
-
-                //Validate that it is a PDF file
-                validatePdf(partPath);
-
-                Files.move(partPath, finalPath,
-                        StandardCopyOption.REPLACE_EXISTING,
-                        StandardCopyOption.ATOMIC_MOVE);
+                //Write, hash and validate the PDF header in one pass over the incoming bytes
+                PdfIngestWriter.Result ingested = PdfIngestWriter.ingest(in, partPath, MAX_UPLOAD_BYTES);
 
                 //Validate hash given to us by the user with real file hash
-                validateHash(finalPath, session.getHash());
-
-                //Once the hash is validated to match the file, we can check with VirusTotal to see if it is malicious
-                VirusTotalApi.Verdict virusTotalVerdict = virusTotalApi.check(session.getHash());
-                if(virusTotalVerdict == VirusTotalApi.Verdict.UNSAFE){
-                    //If we can't safely process the file, simply delete the upload session from the DB,
-                    session.setUploadStatus(UploadStatus.REJECTED_UNSAFE);
-                    uploadRepo.save(session);
-                    //and below, the file itself is deleted with the catch
-                    throw new ResponseStatusException(HttpStatus.FORBIDDEN, "We cannot safely process this file.");
-                } else if (virusTotalVerdict == VirusTotalApi.Verdict.RETRY_LATER) {
-                    throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "VirusTotal rate limited; please retry shortly.");
+                if (!Objects.equals(ingested.sha256(), session.getHash())) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Hash mismatch");
                 }
 
-                //Update session status
-                session.setUploadStatus(UploadStatus.UPLOADED);
-                session.setOriginalFileName(file.getOriginalFilename());
-                uploadRepo.save(session);
-
-                return new UploadResponseDto(session.getId(), session.getUploadStatus());
+                storeVerified(session, partPath);
+                return markUploaded(session, file.getOriginalFilename());
             }
 
         } catch(IOException e){
@@ -189,10 +197,7 @@ public class UploadSessionService {
             uploadRepo.save(session);
 
             //attempt to delete partial upload from disk
-            try {
-                Files.deleteIfExists(partPath);
-                Files.deleteIfExists(finalPath);
-            } catch (IOException ignored) {}
+            deleteQuietly(partPath);
             throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR,
                     "Failed to store uploaded file",
@@ -203,22 +208,136 @@ public class UploadSessionService {
                 session.setUploadStatus(UploadStatus.FAILED);
             }
             uploadRepo.save(session);
-            try {
-                Files.deleteIfExists(partPath);
-                Files.deleteIfExists(finalPath);
-            } catch (IOException ignored) {}
+            deleteQuietly(partPath);
+            discardIfRejected(session);
+            throw e;
+        }
+    }
+
+    //Resumable mode: the client PUTs the file in sequential chunks. Each chunk is staged and
+    //checksummed before it is appended, so a dropped connection only loses the chunk in flight
+    //and the client resumes from receivedBytes/nextChunk (see getChunkProgress).
+    public ChunkProgressResponseDto uploadChunk(UUID uploadId, int chunkIndex, long offset,
+                                                String chunkSha256, InputStream body){
+        UUID userId = CurrentUser.id();
+        UploadSession session = uploadRepo.findByIdAndUser_Id(uploadId, userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found"));
+        ensureAcceptingChunks(session);
+
+        //A retry of a chunk we already appended is acknowledged without touching the file
+        if (chunkIndex < session.getReceivedChunks() && offset < session.getReceivedBytes()) {
+            return chunkProgress(session);
+        }
+        if (chunkIndex != session.getReceivedChunks() || offset != session.getReceivedBytes()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Expected chunk " + session.getReceivedChunks() + " at offset " + session.getReceivedBytes());
+        }
+
+        Path partPath = stagingDir.resolve(uploadId + ".pdf.part");
+        Path chunkPath = null;
+        try {
+            Files.createDirectories(stagingDir);
+
+            //Read the chunk off the network first, without holding any lock on the session, into a
+            //staging file of this request's own: two retries of the same chunk may be arriving at once.
+            //The file hash is continued from a copy, so a chunk that is rejected or loses a race leaves it alone
+            chunkPath = Files.createTempFile(stagingDir, uploadId + ".chunk-" + chunkIndex + "-", null);
+            Path staged = chunkPath;
+            long limit = Math.min(maxChunkBytes, remainingBytes(session, offset));
+            MessageDigest continued = continueHash(uploadId, offset);
+            long chunkLength = stageChunk(body, staged, limit, chunkSha256, offset == 0, continued);
+
+            //Only the part file is shared: it is appended under the row lock, by the first request
+            //that still finds the upload at its offset. A later retry of the chunk just reports progress
+            UploadSession updated = transactionTemplate.execute(status -> {
+                UploadSession locked = uploadRepo.lockByIdAndUserId(uploadId, userId)
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found"));
+                if (locked.getReceivedBytes() != offset) {
+                    return locked;
+                }
+                appendChunk(staged, partPath, offset);
+                if (continued != null) {
+                    runningHashes.put(uploadId, new RunningHash(offset + chunkLength, continued));
+                } else {
+                    runningHashes.invalidate(uploadId);
+                }
+                locked.setReceivedBytes(offset + chunkLength);
+                locked.setReceivedChunks(chunkIndex + 1);
+                locked.setUploadStatus(UploadStatus.UPLOADING);
+                return uploadRepo.save(locked);
+            });
+            return chunkProgress(updated);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to store chunk", e);
+        } catch (ResponseStatusException e) {
+            //Only a non-PDF first chunk poisons the whole upload; anything else can simply be retried
+            if (e.getStatusCode() == HttpStatus.UNSUPPORTED_MEDIA_TYPE) {
+                session.setUploadStatus(UploadStatus.FAILED);
+                uploadRepo.save(session);
+                deleteQuietly(partPath);
+            }
+            throw e;
+        } finally {
+            if (chunkPath != null) deleteQuietly(chunkPath);
+        }
+    }
+
+    public ChunkProgressResponseDto getChunkProgress(UUID uploadId){
+        UUID userId = CurrentUser.id();
+        UploadSession session = uploadRepo.findByIdAndUser_Id(uploadId, userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found"));
+        return chunkProgress(session);
+    }
+
+    //Once every chunk is in, verify the assembled file against the hash declared in createUpload
+    public UploadResponseDto completeChunkedUpload(UUID uploadId, String originalFileName){
+        UUID userId = CurrentUser.id();
+        UploadSession session = uploadRepo.findByIdAndUser_Id(uploadId, userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found"));
+        ensureAcceptingChunks(session);
+
+        if (session.getReceivedChunks() == 0
+                || (session.getSizeBytes() != null && session.getReceivedBytes() != session.getSizeBytes())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Upload incomplete: received " + session.getReceivedBytes() + " bytes");
+        }
+
+        Path partPath = stagingDir.resolve(uploadId + ".pdf.part");
+        try {
+            if (!Objects.equals(assembledHash(uploadId, session.getReceivedBytes(), partPath), session.getHash())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Hash mismatch");
+            }
+            storeVerified(session, partPath);
+            return markUploaded(session, originalFileName);
+        } catch (IOException e) {
+            session.setUploadStatus(UploadStatus.FAILED);
+            uploadRepo.save(session);
+            deleteQuietly(partPath);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to store uploaded file", e);
+        } catch (ResponseStatusException e) {
+            if (session.getUploadStatus() != UploadStatus.REJECTED_UNSAFE) {
+                session.setUploadStatus(UploadStatus.FAILED);
+            }
+            uploadRepo.save(session);
+            deleteQuietly(partPath);
+            discardIfRejected(session);
             throw e;
+        } finally {
+            runningHashes.invalidate(uploadId);
         }
     }
 
     @Transactional
     public UploadFinalizeResponseDto finalizeUpload(UUID uploadId){
-        User user = currentUser();
+        UUID userId = CurrentUser.id();
 
-        UploadSession session = uploadRepo.findByIdAndUser_Id(uploadId, user.getId())
+        //Locked so the scan job's verdict cannot land between the status check and the document insert
+        UploadSession session = uploadRepo.lockByIdAndUserId(uploadId, userId)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found"));
 
-        if(session.getUploadStatus() != UploadStatus.UPLOADED){
+        //A file still being scanned can be finalized; its document waits in SCANNING until the verdict
+        boolean scanning = session.getUploadStatus() == UploadStatus.SCANNING;
+        if(session.getUploadStatus() != UploadStatus.UPLOADED && !scanning){
             throw new ResponseStatusException(HttpStatus.CONFLICT, "File was not fully UPLOADED!!!");
         }
 
@@ -228,70 +347,186 @@ public class UploadSessionService {
             return new UploadFinalizeResponseDto(existing.get().getId(), existing.get().getStatus());
         }
 
+        //Push back (503 + Retry-After) rather than queue a document the extract stage cannot get to
+        pipelineBacklog.requireExtractCapacity();
+
         //Next, generate an empty document and store the file path
         Document document = new Document();
-        document.setStatus(DocumentStatus.READY);
-        document.setFilePath("/tmp/textlift/uploads/" + uploadId + ".pdf");
+        document.setStatus(scanning ? DocumentStatus.SCANNING : DocumentStatus.READY);
+        document.setBlobKey(BlobKeys.pdf(session.getHash()));
         document.setOriginalFileName(session.getOriginalFileName());
         document.setHash(session.getHash());
         documentRepo.save(document);
 
         //Publish finalization event so that async processor can begin extracting data immediately
-        events.publishEvent(new DocumentQueuedEvent(document.getId()));
+        //(a SCANNING document is queued by UploadScanService once the file is cleared)
+        if (!scanning) {
+            events.publishEvent(new DocumentQueuedEvent(document.getId()));
+        }
 
         return new UploadFinalizeResponseDto(document.getId(), document.getStatus());
     }
 
     public StatusResponseDto pollUploadStatus(UUID uploadId){
-        User user = currentUser();
+        UUID userId = CurrentUser.id();
 
-        UploadSession session = uploadRepo.findByIdAndUser_Id(uploadId, user.getId())
+        UploadSession session = uploadRepo.findByIdAndUser_Id(uploadId, userId)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found"));
             return new StatusResponseDto(session.getUploadStatus());
     }
 
-    private User currentUser(){
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByEmail(auth.getName())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found!!"));
-    }
+    //Shared tail of both upload modes once the bytes are on disk and match the declared hash.
+    //The VirusTotal check only happens here when the hash already has a cached verdict; otherwise
+    //the upload returns SCANNING and a SCAN_UPLOAD job fetches the verdict (see UploadScanService).
+    private UploadResponseDto markUploaded(UploadSession session, String originalFileName){
+        session.setOriginalFileName(originalFileName);
+        Optional<VirusTotalApi.Verdict> cached = uploadScanService.cachedVerdict(session.getHash());
+        if(cached.isPresent() && cached.get() == VirusTotalApi.Verdict.UNSAFE){
+            //If we can't safely process the file, mark the session rejected,
+            session.setUploadStatus(UploadStatus.REJECTED_UNSAFE);
+            uploadRepo.save(session);
+            //and the caller deletes the file itself in its catch
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "We cannot safely process this file.");
+        }
 
-    private void validatePdf(Path partPath) {
-        //Checks magic bytes to validate file-type
-        try (InputStream s = Files.newInputStream(partPath)) {
-            byte[] head = s.readNBytes(5);
-            boolean isPdf = head.length == 5
-                    && head[0] == '%' && head[1] == 'P' && head[2] == 'D' && head[3] == 'F' && head[4] == '-';
-            if (!isPdf){
-                throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Not a PDF");
+        //Update session status and queue the scan in the same transaction
+        session.setUploadStatus(cached.isPresent() ? UploadStatus.UPLOADED : UploadStatus.SCANNING);
+        transactionTemplate.executeWithoutResult(status -> {
+            uploadRepo.save(session);
+            if (session.getUploadStatus() == UploadStatus.SCANNING) {
+                events.publishEvent(new UploadScanRequestedEvent(session.getId()));
             }
-        } catch (IOException e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to validate upload", e);
+        });
+
+        return new UploadResponseDto(session.getId(), session.getUploadStatus());
+    }
+
+    //The hash is verified, so the file can go under its content address. Identical PDFs uploaded
+    //by different users end up as one blob.
+    private void storeVerified(UploadSession session, Path partPath) throws IOException {
+        blobStore.put(BlobKeys.pdf(session.getHash()), partPath);
+        Files.deleteIfExists(partPath);
+    }
+
+    //A file VirusTotal flagged is not kept; every upload of the same content gets the same verdict
+    private void discardIfRejected(UploadSession session){
+        if (session.getUploadStatus() != UploadStatus.REJECTED_UNSAFE) return;
+        try {
+            blobStore.delete(BlobKeys.pdf(session.getHash()));
+        } catch (IOException ignored) {}
+    }
+
+    private void ensureAcceptingChunks(UploadSession session){
+        if(session.getUploadStatus() != UploadStatus.PENDING && session.getUploadStatus() != UploadStatus.UPLOADING){
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload session has expired!!!");
         }
     }
 
-    private void validateHash(Path path, String userHash) {
-        final MessageDigest md;
+    private long remainingBytes(UploadSession session, long offset){
+        long declared = session.getSizeBytes() != null ? session.getSizeBytes() : MAX_CHUNKED_UPLOAD_BYTES;
+        long remaining = declared - offset;
+        if (remaining <= 0) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Upload already has all of its bytes");
+        }
+        return remaining;
+    }
+
+    //A copy of the running file hash to extend with the chunk at offset, or null when there is none
+    //for that offset (node restarted since the upload began); completion then re-reads the file
+    private MessageDigest continueHash(UUID uploadId, long offset){
+        if (offset == 0) return PdfIngestWriter.newSha256();
+        RunningHash running = runningHashes.getIfPresent(uploadId);
+        if (running == null || running.bytes() != offset) return null;
         try {
-            md = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Hash algorithm unavailable", e);
+            return (MessageDigest) running.digest().clone();
+        } catch (CloneNotSupportedException e) {
+            return null;
+        }
+    }
+
+    private String assembledHash(UUID uploadId, long receivedBytes, Path partPath) throws IOException {
+        RunningHash running = runningHashes.getIfPresent(uploadId);
+        if (running != null && running.bytes() == receivedBytes) {
+            return HexFormat.of().formatHex(running.digest().digest());
         }
+        return hashFile(partPath);
+    }
 
-        try (InputStream is = Files.newInputStream(path)) {
-            byte[] buf = new byte[8192];
+    //Writes one chunk body to its own staging file, rejecting it if it overruns the limit or the
+    //checksum differs. The bytes also go into fileHash (when not null), the hash of the file so far.
+    private long stageChunk(InputStream body, Path chunkPath, long limit, String expectedSha256, boolean firstChunk,
+                            MessageDigest fileHash) throws IOException {
+        MessageDigest md = PdfIngestWriter.newSha256();
+        byte[] buf = new byte[64 * 1024];
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(chunkPath)) {
+            if (firstChunk) {
+                byte[] head = body.readNBytes(5);
+                if (!PdfIngestWriter.isPdfHeader(head)) {
+                    throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Not a PDF");
+                }
+                md.update(head);
+                if (fileHash != null) fileHash.update(head);
+                out.write(head);
+                total += head.length;
+            }
             int r;
-            while ((r = is.read(buf)) != -1) {
+            while ((r = body.read(buf)) != -1) {
+                total += r;
+                if (total > limit) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Chunk is too large...");
+                }
                 md.update(buf, 0, r);
+                if (fileHash != null) fileHash.update(buf, 0, r);
+                out.write(buf, 0, r);
+            }
+        }
+        if (total == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk is empty!!!");
+        }
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(HexFormat.of().formatHex(md.digest()))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk checksum mismatch");
+        }
+        return total;
+    }
+
+    //Appends at an explicit offset and fsyncs, so a crash never leaves receivedBytes ahead of the file
+    private void appendChunk(Path chunkPath, Path partPath, long offset){
+        try (FileChannel src = FileChannel.open(chunkPath, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            dst.truncate(offset);
+            long size = src.size();
+            long copied = 0;
+            while (copied < size) {
+                copied += dst.transferFrom(src, offset + copied, size - copied);
             }
+            dst.force(false);
         } catch (IOException e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to read file for hashing", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to store chunk", e);
         }
+    }
 
-        String actual = HexFormat.of().formatHex(md.digest());
-        if (!Objects.equals(actual, userHash)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Hash mismatch");
+    private String hashFile(Path path) throws IOException {
+        MessageDigest md = PdfIngestWriter.newSha256();
+        try (InputStream is = Files.newInputStream(path)) {
+            byte[] buf = new byte[64 * 1024];
+            int r;
+            while ((r = is.read(buf)) != -1) {
+                md.update(buf, 0, r);
+            }
         }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private ChunkProgressResponseDto chunkProgress(UploadSession session){
+        return new ChunkProgressResponseDto(session.getId(), session.getUploadStatus(),
+                session.getReceivedChunks(), session.getReceivedBytes(), session.getSizeBytes());
+    }
+
+    private static void deleteQuietly(Path path){
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {}
     }
 
 }
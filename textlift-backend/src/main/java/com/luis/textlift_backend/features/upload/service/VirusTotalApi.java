@@ -1,6 +1,8 @@
 package com.luis.textlift_backend.features.upload.service;
 
+import com.luis.textlift_backend.features.config.metrics.PipelineMetrics;
 import com.luis.textlift_backend.features.upload.api.dto.VirusTotalResponseDto;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
@@ -10,19 +12,36 @@ import org.springframework.web.client.RestTemplate;
 
 @Component
 public class VirusTotalApi {
-    private final String endpoint = "https://www.virustotal.com/api/v3/files/";
+    private final String endpoint;
     private final RestTemplate restTemplate;
     private final String apiKey;
+    private final PipelineMetrics metrics;
 
     public VirusTotalApi(RestTemplate restTemplate,
-                         @Value("${virustotal.api-key}") String apiKey) {
+                         @Value("${virustotal.api-key}") String apiKey,
+                         PipelineMetrics metrics,
+                         @Value("${virustotal.base-url:https://www.virustotal.com}") String baseUrl) {
         this.restTemplate = restTemplate;
         this.apiKey = apiKey;
+        this.metrics = metrics;
+        this.endpoint = baseUrl + "/api/v3/files/";
     }
 
     public enum Verdict { SAFE, UNSAFE, RETRY_LATER }
 
-    public Verdict check(String hash) {
+    //analyzed: the verdict comes from an actual VirusTotal analysis of the file, rather than from an
+    //error response (unknown file, bad request) that is only treated as UNSAFE for this upload
+    public record Result(Verdict verdict, boolean analyzed) {}
+
+    //Timed per verdict (textlift.stage{stage=virustotal})
+    public Result check(String hash) {
+        Timer.Sample sample = metrics.start();
+        Result result = fetchVerdict(hash);
+        metrics.stop(sample, "virustotal", result.verdict().name().toLowerCase());
+        return result;
+    }
+
+    private Result fetchVerdict(String hash) {
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.set("x-apikey", apiKey);
@@ -38,28 +57,30 @@ public class VirusTotalApi {
 
             VirusTotalResponseDto body = resp.getBody();
             if (body == null || body.data() == null || body.data().attributes() == null) {
-                return Verdict.UNSAFE;
+                return new Result(Verdict.UNSAFE, false);
             }
 
             var attributes = body.data().attributes();
             var stats = attributes.lastAnalysisStats();
-            if (stats == null) return Verdict.UNSAFE;
+            if (stats == null) return new Result(Verdict.UNSAFE, false);
 
             boolean hasYaraHits = attributes.crowdsourcedYaraResults() != null
                     && !attributes.crowdsourcedYaraResults().isEmpty();
             boolean hasMalicious = stats.malicious() != null && stats.malicious() > 0;
             boolean hasSuspicious = stats.suspicious() != null && stats.suspicious() > 0;
 
-            return (hasYaraHits || hasMalicious || hasSuspicious) ? Verdict.UNSAFE : Verdict.SAFE;
+            return new Result((hasYaraHits || hasMalicious || hasSuspicious) ? Verdict.UNSAFE : Verdict.SAFE, true);
 
         } catch (RestClientResponseException e) {
             HttpStatusCode status = e.getStatusCode();
-            if (status == HttpStatus.TOO_MANY_REQUESTS || status.is5xxServerError()) {
-                return Verdict.RETRY_LATER;
+            //A bad or expired API key says nothing about the file; retried until the key is fixed
+            if (status == HttpStatus.TOO_MANY_REQUESTS || status == HttpStatus.UNAUTHORIZED
+                    || status == HttpStatus.FORBIDDEN || status.is5xxServerError()) {
+                return new Result(Verdict.RETRY_LATER, false);
             }
-            return Verdict.UNSAFE;
+            return new Result(Verdict.UNSAFE, false);
         } catch (RestClientException e) {
-            return Verdict.RETRY_LATER;
+            return new Result(Verdict.RETRY_LATER, false);
         }
     }
 }
@@ -0,0 +1,6 @@
+package com.luis.textlift_backend.features.upload.service.events;
+
+import java.util.UUID;
+
+//The upload's bytes are stored and it needs a VirusTotal verdict before it can be processed
+public record UploadScanRequestedEvent(UUID uploadId) {}
@@ -0,0 +1,20 @@
+package com.luis.textlift_backend.features.upload.service.events;
+
+import com.luis.textlift_backend.features.pipeline.service.PipelineJobService;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class UploadScanRequestedListener {
+    private final PipelineJobService pipelineJobService;
+    public UploadScanRequestedListener(PipelineJobService pipelineJobService) {
+        this.pipelineJobService = pipelineJobService;
+    }
+
+    //Scanning runs as a durable job so VirusTotal rate limits are retried with backoff; see PipelineJobWorker
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onScanRequested(UploadScanRequestedEvent event){
+        pipelineJobService.enqueueUploadScan(event.uploadId());
+    }
+}
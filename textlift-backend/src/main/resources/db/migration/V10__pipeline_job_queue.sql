@@ -0,0 +1,29 @@
+-- Durable work queue for the document pipeline (extract -> identify -> annotate).
+-- Workers lease rows with SELECT ... FOR UPDATE SKIP LOCKED, so any number of nodes can pull from it.
+create table if not exists pipeline_job (
+    id uuid primary key,
+    type varchar(64) not null
+        check (type in ('PROCESS_DOCUMENT','IDENTIFY_TEXTBOOK','GENERATE_ANNOTATIONS')),
+    status varchar(32) not null
+        check (status in ('PENDING','RUNNING','SUCCEEDED','DEAD')),
+    document_id uuid not null,
+    textbook_id uuid,
+    attempts integer not null default 0,
+    max_attempts integer not null,
+    run_at timestamptz not null,
+    locked_by varchar(255),
+    locked_until timestamptz,
+    last_error text,
+    created_at timestamptz not null default now(),
+    updated_at timestamptz not null default now()
+);
+
+create index if not exists idx_pipeline_job_ready on pipeline_job(status, run_at);
+create index if not exists idx_pipeline_job_document on pipeline_job(document_id);
+
+-- The original constraint predates most of DocumentStatus; allow every value the app writes
+alter table document drop constraint if exists document_status_check;
+alter table document
+    add constraint document_status_check
+        check (status in ('READY','SCANNING','TEXTBOOK_SCANNING','TEXTBOOK_IDENTIFIED','ANNOTATIONS_GENERATING',
+                          'ANNOTATIONS_READY','FAILED_TO_GENERATE','FAILED_TO_IDENTIFY_ISBN'));
@@ -0,0 +1,2 @@
+-- Nodes poll for revocations newer than their last sync
+create index if not exists idx_revoked_token_revoked_at on revoked_token(revoked_at);
@@ -0,0 +1,5 @@
+-- created_at was never populated (no JPA auditing); backfill it so it can drive keyset pagination
+update document set created_at = coalesce(updated_at, now()) where created_at is null;
+
+create index if not exists idx_document_created_at_id on document(created_at desc, id desc);
+create index if not exists idx_upload_session_user_hash on upload_session(user_id, hash);
@@ -0,0 +1,11 @@
+-- Parsed LLM notes per normalized chunk of text, shared across documents. Re-scans and other
+-- editions of a book hash differently as files but mostly produce the same chunks.
+create table if not exists annotation_chunk_cache (
+    id uuid primary key,
+    chunk_hash varchar(64) not null,
+    model varchar(255) not null,
+    prompt_version integer not null,
+    notes_json text not null,
+    created_at timestamptz not null default now(),
+    constraint uq_annotation_chunk_cache unique (chunk_hash, model, prompt_version)
+);
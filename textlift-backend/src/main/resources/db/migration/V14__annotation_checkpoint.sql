@@ -0,0 +1,11 @@
+-- Resumable annotation: notes are stored chunk by chunk and chunks_completed is the checkpoint
+-- (every chunk before it has its notes stored). Existing annotations were written in one go.
+alter table annotation
+    add column if not exists completed boolean not null default true,
+    add column if not exists chunks_completed integer not null default 0;
+alter table annotation alter column completed drop default;
+
+alter table annotation_note
+    add column if not exists chunk_index integer;
+
+create index if not exists idx_annotation_note_annotation_chunk on annotation_note(annotation_id, chunk_index);
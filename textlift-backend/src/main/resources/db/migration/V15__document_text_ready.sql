@@ -0,0 +1,6 @@
+-- Identification can now run while the full text is still being extracted; text_ready tells the
+-- later stages whether file_path already points at the extracted text.
+alter table document
+    add column if not exists text_ready boolean not null default false;
+
+update document set text_ready = true where file_path like '%.txt';
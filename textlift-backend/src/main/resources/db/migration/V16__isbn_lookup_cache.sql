@@ -0,0 +1,9 @@
+-- Google Books results per ISBN, shared by all nodes. Misses are stored too (found = false,
+-- payload null) with a shorter expiry so repeated unknown ISBNs do not burn API quota.
+create table if not exists isbn_lookup_cache (
+    isbn varchar(13) primary key,
+    found boolean not null,
+    payload text,
+    fetched_at timestamptz not null,
+    expires_at timestamptz not null
+);
@@ -0,0 +1,22 @@
+-- VirusTotal verdicts per file hash, shared by all nodes, so a re-upload of a known file skips the API call.
+create table if not exists virus_scan_verdict (
+    sha256 varchar(64) primary key,
+    verdict varchar(16) not null
+        check (verdict in ('SAFE','UNSAFE')),
+    checked_at timestamptz not null,
+    expires_at timestamptz not null
+);
+
+-- Uploads wait in SCANNING while the verdict is fetched by a pipeline job
+alter table upload_session drop constraint if exists upload_session_upload_status_check;
+alter table upload_session
+    add constraint upload_session_upload_status_check
+        check (upload_status in ('UPLOADING','UPLOADED','PENDING','FAILED','PREMATURE_HIT','REJECTED_UNSAFE','SCANNING'));
+
+-- Scan jobs belong to an upload session rather than a document
+alter table pipeline_job drop constraint if exists pipeline_job_type_check;
+alter table pipeline_job
+    add constraint pipeline_job_type_check
+        check (type in ('PROCESS_DOCUMENT','IDENTIFY_TEXTBOOK','GENERATE_ANNOTATIONS','SCAN_UPLOAD'));
+alter table pipeline_job alter column document_id drop not null;
+alter table pipeline_job add column if not exists upload_id uuid;
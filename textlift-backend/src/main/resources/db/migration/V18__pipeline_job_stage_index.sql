@@ -0,0 +1,2 @@
+-- Workers lease and count jobs per stage (type) now
+create index if not exists idx_pipeline_job_type_ready on pipeline_job(type, status, run_at);
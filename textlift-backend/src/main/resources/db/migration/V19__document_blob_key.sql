@@ -0,0 +1,8 @@
+-- Documents now point at a BlobStore key (content addressed by the PDF hash) instead of a local path.
+-- Files already under /tmp are not copied; documents still in flight re-run their stage after the
+-- blob is missing and fail, so users re-upload them.
+alter table document rename column file_path to blob_key;
+
+update document
+set blob_key = hash || case when text_ready then '.txt' else '.pdf' end
+where hash is not null;
@@ -0,0 +1,4 @@
+-- Page the note's quote was found on, from the page index written at extraction; null for notes
+-- made before that (only the model's free-text location is known for those)
+alter table annotation_note
+    add column if not exists page integer;
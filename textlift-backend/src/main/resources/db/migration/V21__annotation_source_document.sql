@@ -0,0 +1,5 @@
+-- The document whose extracted text the checkpoint counts chunks of. Chunk indices only mean
+-- something for one text, so another scan or edition of the same textbook cannot resume it.
+-- Null for existing rows; the next run of an unfinished one starts it over for its own document.
+alter table annotation
+    add column if not exists source_document_id uuid;
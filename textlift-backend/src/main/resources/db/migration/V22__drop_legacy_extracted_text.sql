@@ -0,0 +1,10 @@
+-- V19 pointed documents whose text was already extracted at <hash>.txt, but no file was copied into
+-- the blob store, and extracted text is now <hash>.txt.gz plus block and page index blobs (BlobKeys).
+-- That text is dropped, not backfilled. It cannot be re-extracted either: the PDF was deleted once
+-- its text was stored. Annotated documents no longer need it; the rest are failed here, so users
+-- re-upload them, instead of their annotation jobs retrying against a blob that does not exist.
+update document
+set status = 'FAILED_TO_GENERATE'
+where text_ready
+  and blob_key = hash || '.txt'
+  and status not in ('ANNOTATIONS_READY', 'FAILED_TO_GENERATE', 'FAILED_TO_IDENTIFY_ISBN');
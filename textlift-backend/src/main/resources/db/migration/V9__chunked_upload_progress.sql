@@ -0,0 +1,5 @@
+-- Track resumable chunked uploads: expected size plus the contiguous range received so far
+ALTER TABLE upload_session
+    ADD COLUMN IF NOT EXISTS size_bytes bigint,
+    ADD COLUMN IF NOT EXISTS received_bytes bigint not null default 0,
+    ADD COLUMN IF NOT EXISTS received_chunks integer not null default 0;
@@ -0,0 +1,129 @@
+package com.luis.textlift_backend.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//Annotation notes persisted per second against a real Postgres: the old path (one INSERT and
+//commit per note, as repository.save outside a transaction did) against one transaction of JDBC
+//batches with reWriteBatchedInserts, which is what saveAll + hibernate.jdbc.batch_size produces.
+//Needs a database; point it at one with
+//  -Dbench.jdbc.url=jdbc:postgresql://localhost:5432/textlift -Dbench.jdbc.user=... -Dbench.jdbc.password=...
+//Rows go to a temp table, so nothing is left behind.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnnotationNoteInsertBenchmark {
+    private static final int NOTES = 2_000;
+    private static final int BATCH_SIZE = 500;
+    private static final String INSERT = "insert into bench_annotation_note "
+            + "(id, annotation_id, note, reason, quote, location, created_at, updated_at) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private Connection perRow;
+    private Connection batched;
+
+    @Setup
+    public void setUp() throws SQLException {
+        perRow = connect(false);
+        batched = connect(true);
+        for (Connection c : new Connection[]{perRow, batched}) {
+            try (Statement st = c.createStatement()) {
+                st.execute("""
+                        create temp table bench_annotation_note (
+                          id uuid primary key,
+                          annotation_id uuid,
+                          note text,
+                          reason text,
+                          quote text,
+                          location text,
+                          created_at timestamptz,
+                          updated_at timestamptz
+                        )""");
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        perRow.close();
+        batched.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTES)
+    public void saveEachNote() throws SQLException {
+        perRow.setAutoCommit(true);
+        UUID annotationId = UUID.randomUUID();
+        try (PreparedStatement ps = perRow.prepareStatement(INSERT)) {
+            for (int i = 0; i < NOTES; i++) {
+                bind(ps, annotationId, i);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NOTES)
+    public void batchedInOneTransaction() throws SQLException {
+        batched.setAutoCommit(false);
+        UUID annotationId = UUID.randomUUID();
+        try (PreparedStatement ps = batched.prepareStatement(INSERT)) {
+            for (int i = 0; i < NOTES; i++) {
+                bind(ps, annotationId, i);
+                ps.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+        batched.commit();
+    }
+
+    private static void bind(PreparedStatement ps, UUID annotationId, int i) throws SQLException {
+        Timestamp now = Timestamp.from(Instant.now());
+        ps.setObject(1, UUID.randomUUID());
+        ps.setObject(2, annotationId);
+        ps.setString(3, "Note " + i + ": the passage restates the theorem from the previous section.");
+        ps.setString(4, "Connects the worked example back to the definition.");
+        ps.setString(5, "Every bounded monotone sequence converges.");
+        ps.setString(6, "p. " + (i / 4 + 1));
+        ps.setTimestamp(7, now);
+        ps.setTimestamp(8, now);
+    }
+
+    private static Connection connect(boolean rewriteBatchedInserts) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("user", System.getProperty("bench.jdbc.user", "postgres"));
+        props.setProperty("password", System.getProperty("bench.jdbc.password", "postgres"));
+        props.setProperty("reWriteBatchedInserts", Boolean.toString(rewriteBatchedInserts));
+        return DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5432/textlift"), props);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AnnotationNoteInsertBenchmark.class.getSimpleName())
+                .jvmArgsAppend(
+                        "-Dbench.jdbc.url=" + System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5432/textlift"),
+                        "-Dbench.jdbc.user=" + System.getProperty("bench.jdbc.user", "postgres"),
+                        "-Dbench.jdbc.password=" + System.getProperty("bench.jdbc.password", "postgres"))
+                .build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+package com.luis.textlift_backend.benchmark;
+
+import com.luis.textlift_backend.features.textbook.service.IsbnExtractor;
+import com.luis.textlift_backend.features.textbook.service.RegexIsbnExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+//Front-matter scans per second: the old regex extractor against the single-pass scanner. Each
+//input is a real copyright page (src/test/resources/isbn) followed by a table of contents and
+//preface, up to the 200K chars identification reads. no-isbn13 has only an ISBN-10, so both
+//implementations have to scan the whole input.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IsbnExtractionBenchmark {
+    private static final int FRONT_MATTER_CHARS = 200_000;
+
+    @Param({"physics", "algorithms", "no-isbn13"})
+    public String sample;
+
+    private String text;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder sb = new StringBuilder(FRONT_MATTER_CHARS + 4096);
+        sb.append(load("/isbn/" + sample + "-front-matter.txt"));
+        int chapter = 1;
+        while (sb.length() < FRONT_MATTER_CHARS) {
+            sb.append("\nChapter ").append(chapter).append(": Units, Physical Quantities, and Vectors ..... ").append(chapter * 31);
+            for (int section = 1; section <= 8; section++) {
+                sb.append("\n  ").append(chapter).append('.').append(section)
+                        .append(" Conservation of Energy in 3-D Systems ........ ").append(chapter * 31 + section * 4);
+            }
+            sb.append("\nAs of the 2019-2020 revision, problems 1.14-1.92 were updated (see Table ")
+                    .append(chapter).append("-2, pp. ").append(chapter * 31 + 2).append("-").append(chapter * 31 + 9)
+                    .append(") using data from NIST SP 330, 2019 ed., and CODATA 2018 values such as 6.62607015 x 10-34.");
+            chapter++;
+        }
+        text = sb.substring(0, FRONT_MATTER_CHARS);
+    }
+
+    @Benchmark
+    public Optional<String> regex() {
+        return RegexIsbnExtractor.extractBestIsbn13(text);
+    }
+
+    @Benchmark
+    public Optional<String> scanner() {
+        return IsbnExtractor.extractBestIsbn13(text);
+    }
+
+    private static String load(String resource) throws IOException {
+        try (InputStream in = IsbnExtractionBenchmark.class.getResourceAsStream(resource)) {
+            if (in == null) throw new IOException("Missing sample " + resource);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IsbnExtractionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
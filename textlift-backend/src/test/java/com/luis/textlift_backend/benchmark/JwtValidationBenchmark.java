@@ -0,0 +1,67 @@
+package com.luis.textlift_backend.benchmark;
+
+import com.luis.textlift_backend.features.auth.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.userdetails.User;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Tokens validated per second: the previous per-request work in JwtAuthenticationFilter (decode the
+//secret and build a parser for every parse; subject, then subject + expiry again in isTokenValid)
+//against a single parseClaims call on the cached key and parser.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtValidationBenchmark {
+
+    private String secret;
+    private String token;
+    private JwtService jwtService;
+
+    @Setup
+    public void setUp() {
+        secret = Encoders.BASE64.encode(Jwts.SIG.HS256.key().build().getEncoded());
+        jwtService = new JwtService(secret, 3_600_000L);
+        token = jwtService.generateToken(new User("student@example.com", "x", List.of()));
+    }
+
+    @Benchmark
+    public boolean legacyParseThreeTimes() {
+        String subject = legacyClaims(token).getSubject();
+        boolean valid = subject.equals(legacyClaims(token).getSubject())
+                && !legacyClaims(token).getExpiration().before(new Date());
+        return valid;
+    }
+
+    @Benchmark
+    public boolean cachedParseOnce() {
+        Claims claims = jwtService.parseClaims(token);
+        return claims.getSubject() != null;
+    }
+
+    @SuppressWarnings("deprecation")
+    private Claims legacyClaims(String jwt) {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        return Jwts.parser().setSigningKey(key).build().parseClaimsJws(jwt).getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtValidationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,71 @@
+package com.luis.textlift_backend.benchmark;
+
+import com.luis.textlift_backend.features.document.service.PdfTextExtractor;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+//Sequential vs sharded text extraction of a generated multi-hundred-page PDF.
+//Run with: java -cp <test classpath> com.luis.textlift_backend.benchmark.PdfExtractionBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PdfExtractionBenchmark {
+
+    @Param({"600"})
+    public int pages;
+
+    @Param({"1", "4"})
+    public int workers;
+
+    private Path dir;
+    private Path pdf;
+    private ExecutorService pool;
+    private PdfTextExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("textlift-extract-bench");
+        pdf = PdfFixtures.textbook(dir.resolve("book.pdf"), pages);
+        pool = Executors.newFixedThreadPool(workers);
+        extractor = new PdfTextExtractor(pool, workers > 1, workers, 1, workers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdownNow();
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList()) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public long extract() throws IOException {
+        Path out = dir.resolve("book.txt");
+        try (PDDocument doc = Loader.loadPDF(new RandomAccessReadBufferedFile(pdf.toFile()))) {
+            extractor.extract(doc, pdf, out);
+        }
+        return Files.size(out);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PdfExtractionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
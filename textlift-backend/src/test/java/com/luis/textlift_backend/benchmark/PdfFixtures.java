@@ -0,0 +1,49 @@
+package com.luis.textlift_backend.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+//Generates text-heavy textbook-like PDFs for tests and benchmarks
+public final class PdfFixtures {
+    private PdfFixtures() {}
+
+    public static Path textbook(Path target, int pages) throws IOException {
+        return textbook(target, pages, null);
+    }
+
+    //Same, with an extra line at the top of the first page (an ISBN, or text that makes the file unique)
+    public static Path textbook(Path target, int pages, String firstPageLine) throws IOException {
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        try (PDDocument doc = new PDDocument()) {
+            for (int p = 1; p <= pages; p++) {
+                PDPage page = new PDPage();
+                doc.addPage(page);
+                try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                    cs.beginText();
+                    cs.setFont(font, 10);
+                    cs.setLeading(12);
+                    cs.newLineAtOffset(50, 740);
+                    if (p == 1 && firstPageLine != null) {
+                        cs.showText(firstPageLine);
+                        cs.newLine();
+                    }
+                    cs.showText("Chapter " + (p / 25 + 1) + " - Page " + p);
+                    for (int line = 0; line < 55; line++) {
+                        cs.newLine();
+                        cs.showText("Line " + line + " of page " + p
+                                + ": the mitochondria is the powerhouse of the cell, as of 1998 estimates.");
+                    }
+                    cs.endText();
+                }
+            }
+            doc.save(target.toFile());
+        }
+        return target;
+    }
+}
@@ -0,0 +1,103 @@
+package com.luis.textlift_backend.benchmark;
+
+import com.luis.textlift_backend.features.upload.service.PdfIngestWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Compares the old upload path (copy to disk, re-open for the magic bytes, re-open for SHA-256)
+//against the single-pass PdfIngestWriter. The diskBytesRead counter shows how many bytes each
+//path has to read back from disk after writing them.
+//Run with: mvn test-compile && java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" com.luis.textlift_backend.benchmark.UploadIngestBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadIngestBenchmark {
+
+    @Param({"25"})
+    public int sizeMb;
+
+    private byte[] upload;
+    private Path dir;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class DiskReads {
+        public long diskBytesRead;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            diskBytesRead = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        upload = new byte[sizeMb * 1024 * 1024];
+        new Random(42).nextBytes(upload);
+        System.arraycopy("%PDF-1.7\n".getBytes(), 0, upload, 0, 9);
+        dir = Files.createTempDirectory("textlift-ingest-bench");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList()) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public String legacyCopyThenRescan(DiskReads reads) throws Exception {
+        Path part = dir.resolve("legacy.pdf.part");
+        Path fin = dir.resolve("legacy.pdf");
+        Files.copy(new ByteArrayInputStream(upload), part, StandardCopyOption.REPLACE_EXISTING);
+
+        try (InputStream s = Files.newInputStream(part)) {
+            reads.diskBytesRead += s.readNBytes(5).length;
+        }
+        Files.move(part, fin, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        try (InputStream is = Files.newInputStream(fin)) {
+            byte[] buf = new byte[8192];
+            int r;
+            while ((r = is.read(buf)) != -1) {
+                md.update(buf, 0, r);
+                reads.diskBytesRead += r;
+            }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    @Benchmark
+    public String singlePassIngest(DiskReads reads) throws Exception {
+        Path part = dir.resolve("single.pdf.part");
+        Path fin = dir.resolve("single.pdf");
+        PdfIngestWriter.Result result =
+                PdfIngestWriter.ingest(new ByteArrayInputStream(upload), part, Long.MAX_VALUE);
+        Files.move(part, fin, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return result.sha256();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UploadIngestBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
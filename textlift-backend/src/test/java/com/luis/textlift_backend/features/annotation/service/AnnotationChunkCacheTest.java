@@ -0,0 +1,28 @@
+package com.luis.textlift_backend.features.annotation.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnnotationChunkCacheTest {
+
+    @Test
+    void extractionNoiseHashesTheSame() {
+        String scan = "The \uFB01rst law of thermo\u00ADdynamics\n  states that   energy\r\nis conserved.\n";
+        String edition = "The first law of thermodynamics states that energy is conserved.";
+
+        assertEquals(AnnotationChunkCache.hash(edition), AnnotationChunkCache.hash(scan));
+    }
+
+    @Test
+    void differentTextHashesDifferently() {
+        assertNotEquals(
+                AnnotationChunkCache.hash("Energy is conserved."),
+                AnnotationChunkCache.hash("Energy is not conserved."));
+    }
+
+    @Test
+    void keepsCaseSoQuotesStayExact() {
+        assertNotEquals(AnnotationChunkCache.hash("DNA"), AnnotationChunkCache.hash("dna"));
+    }
+}
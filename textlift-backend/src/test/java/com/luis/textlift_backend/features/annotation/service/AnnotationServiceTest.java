@@ -0,0 +1,214 @@
+package com.luis.textlift_backend.features.annotation.service;
+
+import com.luis.textlift_backend.features.annotation.domain.Annotation;
+import com.luis.textlift_backend.features.annotation.domain.AnnotationNote;
+import com.luis.textlift_backend.features.annotation.repository.AnnotationChunkResultRepository;
+import com.luis.textlift_backend.features.annotation.repository.AnnotationNoteRepository;
+import com.luis.textlift_backend.features.annotation.repository.AnnotationRepository;
+import com.luis.textlift_backend.features.config.metrics.PipelineMetrics;
+import com.luis.textlift_backend.features.document.domain.Document;
+import com.luis.textlift_backend.features.document.domain.DocumentStatus;
+import com.luis.textlift_backend.features.document.repository.DocumentRepository;
+import com.luis.textlift_backend.features.storage.service.BlobKeys;
+import com.luis.textlift_backend.features.storage.service.CompressedText;
+import com.luis.textlift_backend.features.storage.service.LocalBlobStore;
+import com.luis.textlift_backend.features.textbook.domain.Textbook;
+import com.luis.textlift_backend.features.textbook.repository.TextbookRepository;
+import com.luis.textlift_backend.features.upload.repository.UploadSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AnnotationServiceTest {
+    private static final String NOTES = """
+            [{"note":"n","reason":"r","quote":"q","location":"l"}]""";
+
+    @TempDir
+    Path dir;
+
+    private final Document document = new Document();
+    private final Textbook textbook = new Textbook();
+    private final Annotation annotation = new Annotation();
+    private final DocumentRepository documents = mock(DocumentRepository.class);
+    private final TextbookRepository textbooks = mock(TextbookRepository.class);
+    private final AnnotationRepository annotations = mock(AnnotationRepository.class);
+    private final AnnotationNoteRepository notes = mock(AnnotationNoteRepository.class);
+    private final AnnotationChunkResultRepository chunkResults = mock(AnnotationChunkResultRepository.class);
+    private final ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+    private final List<Integer> storedChunks = new ArrayList<>();
+    private LocalBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String hash = "ab".repeat(32);
+        Path plain = dir.resolve("plain.txt");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            text.append("Sentence ").append(i).append(" is about cells and energy.\n");
+        }
+        Files.writeString(plain, text);
+        blobStore = new LocalBlobStore(dir.resolve("blobs"));
+        Path compressed = dir.resolve("text.gz");
+        CompressedText.compress(plain, compressed);
+        blobStore.put(BlobKeys.text(hash), compressed);
+
+        ReflectionTestUtils.setField(document, "id", UUID.randomUUID());
+        document.setHash(hash);
+        document.setBlobKey(BlobKeys.text(hash));
+        document.setTextReady(true);
+        ReflectionTestUtils.setField(textbook, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(annotation, "id", UUID.randomUUID());
+        annotation.setTextbook(textbook);
+
+        when(documents.findById(document.getId())).thenReturn(Optional.of(document));
+        when(textbooks.findById(textbook.getId())).thenReturn(Optional.of(textbook));
+        when(annotations.lockByTextbookId(textbook.getId())).thenReturn(Optional.of(annotation));
+        when(annotations.lockById(annotation.getId())).thenReturn(Optional.of(annotation));
+        when(annotations.save(any())).thenAnswer(call -> call.getArgument(0));
+        when(notes.saveAll(any())).thenAnswer(call -> {
+            Iterable<AnnotationNote> saved = call.getArgument(0);
+            saved.forEach(n -> storedChunks.add(n.getChunkIndex()));
+            return List.of();
+        });
+    }
+
+    private AnnotationService service(boolean chunkCache) {
+        return service(chunkCache, Runnable::run);
+    }
+
+    private AnnotationService service(boolean chunkCache, Executor executor) {
+        ChatClient.Builder builder = mock(ChatClient.Builder.class);
+        when(builder.build()).thenReturn(chatClient);
+        return new AnnotationService(builder, documents, textbooks, annotations, notes,
+                mock(UploadSessionRepository.class), executor, 2, 64, 0,
+                mock(ApplicationEventPublisher.class), new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new AnnotationChunkCache(chunkResults, "test", chunkCache),
+                new PipelineMetrics(new SimpleMeterRegistry()), blobStore);
+    }
+
+    @Test
+    void failedChunkStopsTheCheckpointAndIsRetried() {
+        //The model answers the first chunk, is down for the second, then recovers
+        when(chatClient.prompt().user(anyString()).call().content())
+                .thenReturn(NOTES)
+                .thenThrow(new RuntimeException("Ollama unavailable"))
+                .thenReturn(NOTES);
+        AnnotationService service = service(false);
+
+        ResponseStatusException failed = assertThrows(ResponseStatusException.class,
+                () -> service.generateAnnotations(textbook.getId(), document.getId()));
+        assertTrue(failed.getStatusCode().is5xxServerError());
+        assertEquals(1, annotation.getChunksCompleted());
+        assertFalse(annotation.isCompleted());
+        assertEquals(List.of(0), storedChunks);
+
+        //The retry resumes at the failed chunk instead of skipping it
+        service.generateAnnotations(textbook.getId(), document.getId());
+        assertTrue(annotation.isCompleted());
+        assertTrue(annotation.getChunksCompleted() > 2);
+        assertEquals(1, storedChunks.get(1));
+        for (int i = 0; i < storedChunks.size(); i++) {
+            assertEquals(i, storedChunks.get(i));
+        }
+    }
+
+    @Test
+    void unparseableAnswerFinishesTheChunkWithoutNotes() {
+        //The second chunk gets prose instead of JSON every time it is asked
+        when(chatClient.prompt().user(anyString()).call().content())
+                .thenReturn(NOTES)
+                .thenReturn("Sorry, I cannot help with that.")
+                .thenReturn(NOTES);
+        AnnotationService service = service(true);
+
+        service.generateAnnotations(textbook.getId(), document.getId());
+
+        assertTrue(annotation.isCompleted());
+        assertFalse(storedChunks.contains(1));
+        assertTrue(storedChunks.contains(2));
+        //Only the chunks with a real answer reach the chunk cache
+        verify(chunkResults, times(annotation.getChunksCompleted() - 1))
+                .insertIfAbsent(anyString(), eq("test"), anyInt(), anyString());
+    }
+
+    @Test
+    void anotherScanOfTheTextbookDoesNotResumeItsCheckpoint() {
+        when(chatClient.prompt().user(anyString()).call().content()).thenReturn(NOTES);
+        Document other = new Document();
+        ReflectionTestUtils.setField(other, "id", UUID.randomUUID());
+        other.setStatus(DocumentStatus.ANNOTATIONS_GENERATING);
+        when(documents.findById(other.getId())).thenReturn(Optional.of(other));
+        annotation.setSourceDocumentId(other.getId());
+        annotation.setChunksCompleted(3);
+        AnnotationService service = service(false);
+
+        //The other scan is still being annotated: this one waits instead of mixing chunk indices
+        service.generateAnnotations(textbook.getId(), document.getId());
+        assertEquals(other.getId(), annotation.getSourceDocumentId());
+        assertEquals(3, annotation.getChunksCompleted());
+        assertTrue(storedChunks.isEmpty());
+
+        //Its job died: this document starts the checkpoint over on its own text
+        other.setStatus(DocumentStatus.FAILED_TO_GENERATE);
+        service.generateAnnotations(textbook.getId(), document.getId());
+        verify(notes).deleteByAnnotationId(annotation.getId());
+        assertEquals(document.getId(), annotation.getSourceDocumentId());
+        assertTrue(annotation.isCompleted());
+        assertEquals(0, storedChunks.get(0));
+    }
+
+    @Test
+    void finishedChunksBehindASlowOneCountAgainstTheBookLimit() throws Exception {
+        //The first chunk hangs; every later one is answered at once
+        CountDownLatch slowAnswer = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(chatClient.prompt().user(anyString()).call().content()).thenAnswer(call -> {
+            if (calls.getAndIncrement() == 0) slowAnswer.await();
+            return NOTES;
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            AnnotationService service = service(false, pool);
+            Future<?> run = pool.submit(() -> service.generateAnnotations(textbook.getId(), document.getId()));
+
+            //With a limit of 2 only the slow chunk and the one after it are sent while the first is unstored
+            while (calls.get() < 2) Thread.sleep(10);
+            Thread.sleep(200);
+            assertEquals(2, calls.get());
+
+            slowAnswer.countDown();
+            run.get(10, TimeUnit.SECONDS);
+            assertTrue(annotation.isCompleted());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
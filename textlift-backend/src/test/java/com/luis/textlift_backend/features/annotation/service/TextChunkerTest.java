@@ -0,0 +1,115 @@
+package com.luis.textlift_backend.features.annotation.service;
+
+import com.luis.textlift_backend.features.storage.service.TextPageIndex;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextChunkerTest {
+
+    @Test
+    void chunksCoverTheTextInOrderWithinBudget() throws Exception {
+        String text = book(40, 12, "Sentence %d of page %d goes on about cells and energy.");
+
+        List<TextChunker.Chunk> chunks = chunk(text, null, 400, 0);
+
+        assertTrue(chunks.size() > 5);
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < chunks.size(); i++) {
+            TextChunker.Chunk chunk = chunks.get(i);
+            assertEquals(i, chunk.index());
+            assertEquals(joined.length(), chunk.start());
+            assertTrue(chunk.tokens() <= 400, "chunk " + i + " has " + chunk.tokens() + " tokens");
+            assertEquals(TextChunker.estimateTokens(chunk.text()), chunk.tokens());
+            joined.append(chunk.text());
+        }
+        assertEquals(text, joined.toString());
+    }
+
+    @Test
+    void prefersPageStartsOverMidPageCuts() throws Exception {
+        String text = book(30, 10, "Line %d of page %d without any full stop");
+        long[] starts = new long[31];
+        for (int page = 1; page <= 30; page++) {
+            starts[page - 1] = text.indexOf("Line 0 of page " + page + " ");
+        }
+        starts[30] = text.length();
+        TextPageIndex pages = new TextPageIndex(starts);
+
+        List<TextChunker.Chunk> chunks = chunk(text, pages, 300, 0);
+
+        //Each chunk starts on a page, unless a content-defined boundary came first
+        for (TextChunker.Chunk chunk : chunks) {
+            String firstLine = chunk.text().substring(0, chunk.text().indexOf('\n'));
+            boolean onPage = pages.start(pages.pageAt(chunk.start())) == chunk.start();
+            assertTrue(onPage || TextChunker.isChunkBoundary(firstLine), "chunk starts at " + firstLine);
+        }
+    }
+
+    @Test
+    void overlapRepeatsTheEndOfThePreviousChunk() throws Exception {
+        String text = book(20, 12, "Sentence %d of page %d goes on about cells and energy.");
+
+        List<TextChunker.Chunk> chunks = chunk(text, null, 400, 60);
+
+        for (int i = 1; i < chunks.size(); i++) {
+            TextChunker.Chunk previous = chunks.get(i - 1);
+            TextChunker.Chunk chunk = chunks.get(i);
+            long previousEnd = previous.start() + previous.text().length();
+            assertTrue(chunk.start() < previousEnd, "chunk " + i + " does not overlap");
+            assertTrue(chunk.start() > previous.start());
+            assertEquals(text.substring((int) chunk.start(), (int) chunk.start() + chunk.text().length()), chunk.text());
+        }
+        TextChunker.Chunk last = chunks.get(chunks.size() - 1);
+        assertEquals(text.length(), last.start() + last.text().length());
+    }
+
+    @Test
+    void splitsLinesLongerThanTheBudget() throws Exception {
+        String text = "word ".repeat(5_000).trim() + "\nshort tail\n";
+
+        List<TextChunker.Chunk> chunks = chunk(text, null, 200, 0);
+
+        StringBuilder joined = new StringBuilder();
+        for (TextChunker.Chunk chunk : chunks) {
+            assertTrue(chunk.tokens() <= 200);
+            joined.append(chunk.text());
+        }
+        assertEquals(text, joined.toString());
+    }
+
+    @Test
+    void estimatesTokens() {
+        assertEquals(0, TextChunker.estimateTokens("   \n"));
+        //the(1) mitochondria(3) is(1) 42(1) .(1)
+        assertEquals(7, TextChunker.estimateTokens("the mitochondria is 42."));
+        //Each CJK character (and each surrogate pair) counts once
+        assertEquals(3, TextChunker.estimateTokens("細胞𝔽"));
+    }
+
+    private static String book(int pages, int linesPerPage, String format) {
+        StringBuilder sb = new StringBuilder();
+        for (int page = 1; page <= pages; page++) {
+            for (int line = 0; line < linesPerPage; line++) {
+                sb.append(String.format(format, line, page)).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<TextChunker.Chunk> chunk(String text, TextPageIndex pages, int maxTokens, int overlap) throws IOException {
+        TextChunker chunker = new TextChunker(new BufferedReader(new StringReader(text)), pages, maxTokens, overlap);
+        List<TextChunker.Chunk> chunks = new ArrayList<>();
+        TextChunker.Chunk chunk;
+        while ((chunk = chunker.next()) != null) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
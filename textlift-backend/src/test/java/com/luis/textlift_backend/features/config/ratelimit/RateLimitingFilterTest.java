@@ -0,0 +1,47 @@
+package com.luis.textlift_backend.features.config.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitingFilterTest {
+    private final RateLimitingFilter filter = new RateLimitingFilter(new RateLimitingConfig(10, 120).rateLimitCache());
+
+    @Test
+    void chunksOfALargeUploadHaveTheirOwnBudget() throws Exception {
+        String upload = "/api/v1/upload/" + UUID.randomUUID();
+        //32 chunks of 8 MB: a 250 MB book, well past the general limit of 10
+        for (int i = 0; i < 32; i++) {
+            assertEquals(200, send("PUT", upload + "/chunks/" + i));
+        }
+        assertEquals(200, send("POST", upload + "/chunks/complete"));
+
+        //The general budget is untouched by them, and still enforced
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, send("GET", upload + "/status"));
+        }
+        assertEquals(429, send("GET", upload + "/status"));
+    }
+
+    @Test
+    void chunkBudgetIsLimitedToo() throws Exception {
+        String chunks = "/api/v1/upload/" + UUID.randomUUID() + "/chunks/";
+        for (int i = 0; i < 120; i++) {
+            assertEquals(200, send("PUT", chunks + i));
+        }
+        assertEquals(429, send("PUT", chunks + 120));
+    }
+
+    private int send(String method, String uri) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr("203.0.113.7");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,63 @@
+package com.luis.textlift_backend.features.document.service;
+
+import com.luis.textlift_backend.benchmark.PdfFixtures;
+import com.luis.textlift_backend.features.config.metrics.PipelineMetrics;
+import com.luis.textlift_backend.features.document.domain.Document;
+import com.luis.textlift_backend.features.document.domain.DocumentStatus;
+import com.luis.textlift_backend.features.document.repository.DocumentRepository;
+import com.luis.textlift_backend.features.storage.service.BlobKeys;
+import com.luis.textlift_backend.features.storage.service.LocalBlobStore;
+import com.luis.textlift_backend.features.upload.repository.UploadSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DocumentServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void extractionStopsOnceTheBookIsAlreadyAnnotated() throws Exception {
+        String hash = "ce".repeat(32);
+        Document document = new Document();
+        ReflectionTestUtils.setField(document, "id", UUID.randomUUID());
+        document.setHash(hash);
+        document.setStatus(DocumentStatus.TEXTBOOK_IDENTIFIED);
+        document.setBlobKey(BlobKeys.pdf(hash));
+        DocumentRepository documents = mock(DocumentRepository.class);
+        when(documents.findById(document.getId())).thenReturn(Optional.of(document));
+        when(documents.findStatusById(document.getId())).thenReturn(Optional.of(DocumentStatus.ANNOTATIONS_READY));
+
+        LocalBlobStore blobs = new LocalBlobStore(dir.resolve("blobs"));
+        blobs.put(BlobKeys.pdf(hash), PdfFixtures.textbook(dir.resolve("book.pdf"), 40));
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        DocumentService service = new DocumentService(documents, mock(ApplicationEventPublisher.class),
+                mock(UploadSessionRepository.class), new PdfTextExtractor(pool, false, 1, 1, 0),
+                mock(DocumentStatusStreams.class), new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new PipelineMetrics(new SimpleMeterRegistry()), blobs, dir.resolve("work"), false, 15, 5);
+        try {
+            service.processDocument(document.getId());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertFalse(blobs.exists(BlobKeys.pdf(hash)));
+        assertFalse(blobs.exists(BlobKeys.text(hash)));
+        assertFalse(blobs.exists(BlobKeys.textPages(hash)));
+        verify(documents, never()).lockById(any());
+    }
+}
@@ -0,0 +1,79 @@
+package com.luis.textlift_backend.features.document.service;
+
+import com.luis.textlift_backend.benchmark.PdfFixtures;
+import com.luis.textlift_backend.features.storage.service.TextPageIndex;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfTextExtractorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shardedExtractionMatchesSequentialPageOrder() throws Exception {
+        Path pdf = PdfFixtures.textbook(dir.resolve("book.pdf"), 130);
+        Path sequential = dir.resolve("sequential.txt");
+        Path sharded = dir.resolve("sharded.txt");
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        TextPageIndex sequentialPages;
+        TextPageIndex shardedPages;
+        try (PDDocument doc = Loader.loadPDF(new RandomAccessReadBufferedFile(pdf.toFile()))) {
+            sequentialPages = new PdfTextExtractor(pool, false, 1, 1, 0).extract(doc, pdf, sequential);
+            shardedPages = new PdfTextExtractor(pool, true, 5, 1, 0).extract(doc, pdf, sharded);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        String expected = Files.readString(sequential);
+        assertTrue(expected.indexOf("Page 1\n") < expected.indexOf("Page 130"));
+        assertEquals(expected, Files.readString(sharded));
+        try (var files = Files.list(dir)) {
+            assertTrue(files.noneMatch(p -> p.getFileName().toString().contains(".shard-")));
+        }
+
+        //Every page starts exactly at its heading, whichever way it was extracted
+        assertEquals(130, shardedPages.pageCount());
+        assertEquals(expected.length(), shardedPages.totalChars());
+        for (int page = 1; page <= 130; page++) {
+            assertEquals(sequentialPages.start(page), shardedPages.start(page));
+            int start = (int) shardedPages.start(page);
+            assertTrue(expected.startsWith("Chapter " + (page / 25 + 1) + " - Page " + page + "\n", start), "page " + page);
+            assertEquals(page, shardedPages.pageAt(start));
+            assertEquals(page, shardedPages.pageAt(shardedPages.end(page) - 1));
+        }
+    }
+
+    @Test
+    void cancelledExtractionStopsBetweenWindows() throws Exception {
+        Path pdf = PdfFixtures.textbook(dir.resolve("book.pdf"), 130);
+        AtomicInteger checks = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try (PDDocument doc = Loader.loadPDF(new RandomAccessReadBufferedFile(pdf.toFile()))) {
+            PdfTextExtractor extractor = new PdfTextExtractor(pool, true, 3, 1, 0);
+            assertThrows(PdfTextExtractor.ExtractionCancelledException.class,
+                    () -> extractor.extract(doc, pdf, dir.resolve("book.txt"), () -> checks.incrementAndGet() > 2));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        //130 pages in 3 shards of 44 is 9 windows; each shard stops at its next window once cancelled
+        assertTrue(checks.get() < 9, "windows checked: " + checks.get());
+        try (var files = Files.list(dir)) {
+            assertTrue(files.noneMatch(p -> p.getFileName().toString().contains(".shard-")));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.luis.textlift_backend.features.storage.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Behaviour every BlobStore must share; each implementation's test extends this with its own store
+abstract class BlobStoreContractTest {
+
+    @TempDir
+    Path dir;
+
+    //A store with no blobs from earlier tests in it (or with keys that cannot clash)
+    abstract BlobStore store() throws Exception;
+
+    //A fresh content hash per test, so stores shared across tests do not see each other's blobs
+    static String newHash() {
+        return (UUID.randomUUID().toString() + UUID.randomUUID()).replace("-", "");
+    }
+
+    @Test
+    void putThenReadBack() throws Exception {
+        BlobStore store = store();
+        String key = BlobKeys.pdf(newHash());
+        Path source = Files.writeString(dir.resolve("in.pdf"), "%PDF-1.7 contract body", StandardCharsets.US_ASCII);
+
+        assertFalse(store.exists(key));
+        store.put(key, source);
+
+        assertTrue(store.exists(key));
+        try (InputStream in = store.open(key)) {
+            assertEquals("%PDF-1.7 contract body", new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+        }
+        try (BlobStore.LocalFile local = store.toLocalFile(key)) {
+            assertEquals("%PDF-1.7 contract body", Files.readString(local.path(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void firstPutOfAKeyWins() throws Exception {
+        BlobStore store = store();
+        String key = BlobKeys.text(newHash());
+
+        store.put(key, Files.writeString(dir.resolve("first.txt"), "first"));
+        store.put(key, Files.writeString(dir.resolve("second.txt"), "second"));
+
+        try (InputStream in = store.open(key)) {
+            assertEquals("first", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void opensFromAnOffset() throws Exception {
+        BlobStore store = store();
+        String key = BlobKeys.textIndex(newHash());
+        store.put(key, Files.writeString(dir.resolve("index"), "0123456789"));
+
+        try (InputStream in = store.open(key, 4)) {
+            assertEquals("456789", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        try (InputStream in = store.open(key, 0)) {
+            assertEquals("0123456789", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void deletedAndMissingBlobs() throws Exception {
+        BlobStore store = store();
+        String key = BlobKeys.frontMatter(newHash());
+        store.put(key, Files.writeString(dir.resolve("front.txt"), "front"));
+
+        store.delete(key);
+        //Deleting again (or a key that never existed) is not an error
+        store.delete(key);
+
+        assertFalse(store.exists(key));
+        assertThrows(NoSuchFileException.class, () -> store.open(key).close());
+        assertThrows(NoSuchFileException.class, () -> store.toLocalFile(key));
+    }
+
+    @Test
+    void localCopyIsRemovedOnClose() throws Exception {
+        BlobStore store = store();
+        String key = BlobKeys.textPages(newHash());
+        store.put(key, Files.writeString(dir.resolve("pages"), "pages"));
+
+        Path path;
+        try (BlobStore.LocalFile local = store.toLocalFile(key)) {
+            path = local.path();
+            assertTrue(Files.exists(path));
+        }
+        //A store that hands out the blob itself keeps it; a downloaded copy is gone
+        assertTrue(store.exists(key));
+        try (InputStream in = store.open(key)) {
+            assertEquals("pages", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        if (!(store instanceof LocalBlobStore)) {
+            assertFalse(Files.exists(path));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.luis.textlift_backend.features.storage.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedTextTest {
+    private static final String HASH = "cd34" + "0".repeat(60);
+
+    @TempDir
+    Path dir;
+
+    //Mixes 1-, 2-, 3- and 4-byte UTF-8 so small blocks get cut inside characters
+    private static String sampleText() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            sb.append("Line ").append(i).append(": théorème → ∑ 𝔽").append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void roundTripsAcrossBlockBoundaries() throws Exception {
+        String text = sampleText();
+        LocalBlobStore store = new LocalBlobStore(dir.resolve("blobs"));
+        TextBlockIndex index = store(store, text, 1_000);
+
+        assertTrue(index.blockCount() > 10);
+        assertEquals(text.length(), index.totalChars());
+        try (Reader reader = CompressedText.reader(store, BlobKeys.text(HASH))) {
+            assertEquals(text, readAll(reader));
+        }
+        //Still one ordinary gzip file
+        try (InputStream in = new GZIPInputStream(store.open(BlobKeys.text(HASH)))) {
+            assertEquals(text, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void seeksToAnyCharOffset() throws Exception {
+        String text = sampleText();
+        LocalBlobStore store = new LocalBlobStore(dir.resolve("blobs"));
+        TextBlockIndex index = store(store, text, 1_000);
+
+        TextBlockIndex loaded = CompressedText.readIndex(store, BlobKeys.textIndex(HASH));
+        for (long offset : new long[]{0, 1, 999, 1_000, 12_345, text.length() - 1}) {
+            try (Reader reader = CompressedText.reader(store, BlobKeys.text(HASH), loaded, offset)) {
+                char[] buf = new char[20];
+                int n = reader.read(buf);
+                String expected = text.substring((int) offset, (int) Math.min(text.length(), offset + n));
+                assertEquals(expected, new String(buf, 0, n), "offset " + offset);
+            }
+        }
+        try (Reader reader = CompressedText.reader(store, BlobKeys.text(HASH), index, text.length())) {
+            assertEquals(-1, reader.read());
+        }
+    }
+
+    @Test
+    void emptyTextAndPlainBlobs() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(dir.resolve("blobs"));
+        TextBlockIndex index = store(store, "", 1_000);
+
+        assertEquals(0, index.blockCount());
+        try (Reader reader = CompressedText.reader(store, BlobKeys.text(HASH))) {
+            assertEquals(-1, reader.read());
+        }
+
+        //Text extracted before compression was stored as plain <hash>.txt
+        String legacy = HASH + ".txt";
+        store.put(legacy, Files.writeString(dir.resolve("legacy.txt"), "plain text"));
+        try (Reader reader = CompressedText.reader(store, legacy)) {
+            assertEquals("plain text", readAll(reader));
+        }
+    }
+
+    @Test
+    void indexRoundTrips() throws Exception {
+        TextBlockIndex index = new TextBlockIndex(new long[]{0, 40, 95}, new long[]{0, 100, 180});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out);
+
+        TextBlockIndex read = TextBlockIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(2, read.blockCount());
+        assertEquals(180, read.totalChars());
+        assertEquals(95, read.compressedSize());
+        assertEquals(0, read.blockOf(99));
+        assertEquals(1, read.blockOf(100));
+        assertEquals(1, read.blockOf(500));
+        assertThrows(IOException.class, () -> TextBlockIndex.readFrom(new ByteArrayInputStream(new byte[12])));
+    }
+
+    private TextBlockIndex store(BlobStore store, String text, int blockBytes) throws IOException {
+        Path plain = Files.writeString(dir.resolve("text.txt"), text, StandardCharsets.UTF_8);
+        Path compressed = dir.resolve("text.txt.gz");
+        TextBlockIndex index = CompressedText.compress(plain, compressed, blockBytes);
+        Path indexFile = dir.resolve("text.txt.idx");
+        try (var out = Files.newOutputStream(indexFile)) {
+            index.writeTo(out);
+        }
+        store.put(BlobKeys.text(HASH), compressed);
+        store.put(BlobKeys.textIndex(HASH), indexFile);
+        return index;
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[4096];
+        int n;
+        while ((n = reader.read(buf)) != -1) sb.append(buf, 0, n);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.luis.textlift_backend.features.storage.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalBlobStoreTest extends BlobStoreContractTest {
+    private static final String HASH = "ab12" + "0".repeat(60);
+
+    @Override
+    BlobStore store() {
+        return new LocalBlobStore(dir.resolve("blobs"));
+    }
+
+    @Test
+    void storesShardedAndReadsBack() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(dir.resolve("blobs"));
+        Path source = Files.writeString(dir.resolve("in.pdf"), "%PDF-1.7 body", StandardCharsets.US_ASCII);
+        String key = BlobKeys.pdf(HASH);
+
+        store.put(key, source);
+
+        assertEquals(dir.resolve("blobs/ab/12/" + key), store.resolve(key));
+        assertTrue(store.exists(key));
+        try (InputStream in = store.open(key)) {
+            assertEquals("%PDF-1.7 body", new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+        }
+        try (BlobStore.LocalFile local = store.toLocalFile(key)) {
+            assertEquals(store.resolve(key), local.path());
+        }
+        //Only the blob itself, no temp files left behind
+        try (var files = Files.list(store.resolve(key).getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void sameKeyIsStoredOnce() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(dir.resolve("blobs"));
+        String key = BlobKeys.text(HASH);
+
+        store.put(key, Files.writeString(dir.resolve("first.txt"), "first"));
+        store.put(key, Files.writeString(dir.resolve("second.txt"), "second"));
+
+        assertEquals("first", Files.readString(store.resolve(key)));
+    }
+
+    @Test
+    void deleteAndMissingBlobs() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(dir.resolve("blobs"));
+        String key = BlobKeys.frontMatter(HASH);
+        store.put(key, Files.writeString(dir.resolve("front.txt"), "front"));
+
+        store.delete(key);
+        store.delete(key);
+
+        assertFalse(store.exists(key));
+        assertThrows(NoSuchFileException.class, () -> store.open(key).close());
+        assertThrows(NoSuchFileException.class, () -> store.toLocalFile(key));
+    }
+
+    @Test
+    void rejectsKeysOutsideTheStore() {
+        LocalBlobStore store = new LocalBlobStore(dir.resolve("blobs"));
+
+        assertThrows(IllegalArgumentException.class, () -> store.exists("../../etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> store.exists("ab/cd.pdf"));
+        assertThrows(IllegalArgumentException.class, () -> BlobKeys.pdf("not-a-hash"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.luis.textlift_backend.features.storage.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.net.URI;
+
+//The BlobStore contract against a real S3 API (MinIO, path-style, like a self-hosted deployment).
+//Needs Docker; skipped where it is not available.
+@Testcontainers(disabledWithoutDocker = true)
+class S3BlobStoreTest extends BlobStoreContractTest {
+    private static final String BUCKET = "textlift-test";
+
+    @Container
+    static final MinIOContainer MINIO = new MinIOContainer("minio/minio:RELEASE.2025-04-22T22-12-26Z");
+
+    private S3BlobStore store;
+
+    @BeforeAll
+    static void createBucket() {
+        try (S3Client admin = S3Client.builder()
+                .endpointOverride(URI.create(MINIO.getS3URL()))
+                .region(Region.US_EAST_1)
+                .forcePathStyle(true)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(MINIO.getUserName(), MINIO.getPassword())))
+                .build()) {
+            admin.createBucket(b -> b.bucket(BUCKET));
+        }
+    }
+
+    @AfterEach
+    void closeStore() {
+        if (store != null) store.destroy();
+    }
+
+    //Tests share the bucket; each uses keys of its own hash
+    @Override
+    BlobStore store() {
+        store = new S3BlobStore(BUCKET, "blobs/", MINIO.getS3URL(), "us-east-1", true,
+                MINIO.getUserName(), MINIO.getPassword(), dir.resolve("work"));
+        return store;
+    }
+}
@@ -0,0 +1,121 @@
+package com.luis.textlift_backend.features.textbook.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsbnExtractorTest {
+    private static final String[] SEPARATORS = {"", "", "-", " ", "\n", "\t", "--", " - "};
+    private static final String[] LABELS = {
+            "ISBN ", "ISBN: ", "isbn-13 ", "ISBN-10: ", "ISBN-13:", "ISBN#", "ISBN", "Isbn\n", "ISBN-1 ", "eISBN "
+    };
+    private static final String[] NOISE = {
+            " ", " ", "\n", "\r\n", "\t", "\u000B", "-", ":", "#", ".", ",", "(", ")", "/", "_", "X", "x",
+            "Copyright ", "Printed in the United States of America", "Library of Congress ", "p. ",
+            "978", "979", "97",
+            //Non-ASCII letters/digits, combining marks and a no-break space: \b treats these specially
+            "\u00E9", "\u0301", "\u00A0", "\u0663", "a\u0301", "\uD835\uDFD8", "Z"
+    };
+
+    @Test
+    void matchesTheRegexImplementationOnGeneratedText() {
+        Random random = new Random(20260115L);
+        for (int i = 0; i < 50_000; i++) {
+            String text = generate(random);
+            Optional<String> expected = RegexIsbnExtractor.extractBestIsbn13(text);
+            Optional<String> actual = IsbnExtractor.extractBestIsbn13(text);
+            assertEquals(expected, actual, () -> "Mismatch for input: " + escape(text));
+        }
+    }
+
+    @Test
+    void prefersFirstIsbn13OverEarlierIsbn10() {
+        String text = "First printing ISBN 0-306-40615-2 (pbk.)\nISBN-13: 978-1-86197-876-9 (hbk.)";
+        assertEquals(Optional.of("9781861978769"), IsbnExtractor.extractBestIsbn13(text));
+    }
+
+    @Test
+    void convertsIsbn10WhenThatIsAllThereIs() {
+        assertEquals(Optional.of("9780306406157"), IsbnExtractor.extractBestIsbn13("ISBN 0-306-40615-2"));
+        assertEquals(Optional.of("9780804429573"), IsbnExtractor.extractBestIsbn13("ISBN 0-8044-2957-X"));
+    }
+
+    @Test
+    void ignoresNumbersWithBadChecksums() {
+        assertEquals(Optional.empty(), IsbnExtractor.extractBestIsbn13("Tel. 1-800-555-0199, LCCN 2019012345, 978-0-306-40615-8"));
+        assertEquals(Optional.empty(), IsbnExtractor.extractBestIsbn13(null));
+    }
+
+    private static String generate(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int tokens = 1 + random.nextInt(12);
+        for (int t = 0; t < tokens; t++) {
+            switch (random.nextInt(6)) {
+                case 0 -> sb.append(LABELS[random.nextInt(LABELS.length)]).append(formatted(isbn13(random), random));
+                case 1 -> sb.append(LABELS[random.nextInt(LABELS.length)]).append(formatted(isbn10(random), random));
+                case 2 -> sb.append(formatted(randomDigits(random, 1 + random.nextInt(22)), random));
+                case 3 -> sb.append(formatted(mutate(random.nextBoolean() ? isbn13(random) : isbn10(random), random), random));
+                default -> sb.append(NOISE[random.nextInt(NOISE.length)]);
+            }
+        }
+        return sb.toString();
+    }
+
+    //Separators between random groups of digits, as ISBNs are printed
+    private static String formatted(String digits, Random random) {
+        StringBuilder sb = new StringBuilder();
+        String sep = SEPARATORS[random.nextInt(SEPARATORS.length)];
+        for (int i = 0; i < digits.length(); i++) {
+            sb.append(digits.charAt(i));
+            if (i < digits.length() - 1 && random.nextInt(4) == 0) {
+                sb.append(random.nextInt(8) == 0 ? SEPARATORS[random.nextInt(SEPARATORS.length)] : sep);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String mutate(String digits, Random random) {
+        char[] chars = digits.toCharArray();
+        int pos = random.nextInt(chars.length);
+        chars[pos] = (char) ('0' + random.nextInt(10));
+        return new String(chars);
+    }
+
+    private static String randomDigits(Random random, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) sb.append((char) ('0' + random.nextInt(10)));
+        return sb.toString();
+    }
+
+    private static String isbn13(Random random) {
+        String body = (random.nextBoolean() ? "978" : "979") + randomDigits(random, 9);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int d = body.charAt(i) - '0';
+            sum += (i % 2 == 0) ? d : 3 * d;
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+
+    private static String isbn10(Random random) {
+        String body = randomDigits(random, 9);
+        int sum = 0;
+        for (int i = 0; i < 9; i++) {
+            sum += (body.charAt(i) - '0') * (10 - i);
+        }
+        int check = (11 - sum % 11) % 11;
+        return body + (check == 10 ? (random.nextBoolean() ? "X" : "x") : String.valueOf(check));
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            if (c < 0x20 || c > 0x7e) sb.append(String.format("\\u%04X", (int) c));
+            else sb.append(c);
+        }
+        return sb.toString();
+    }
+}
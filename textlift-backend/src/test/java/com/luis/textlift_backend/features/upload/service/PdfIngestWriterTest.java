@@ -0,0 +1,83 @@
+package com.luis.textlift_backend.features.upload.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfIngestWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesFileAndHashesInOnePass() throws Exception {
+        byte[] body = "%PDF-1.7\nhello textbook\n%%EOF".getBytes(StandardCharsets.US_ASCII);
+        Path target = dir.resolve("a.pdf.part");
+
+        PdfIngestWriter.Result result = PdfIngestWriter.ingest(new ByteArrayInputStream(body), target, 1024);
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        assertEquals(expected, result.sha256());
+        assertEquals(body.length, result.bytesWritten());
+        assertArrayEquals(body, Files.readAllBytes(target));
+    }
+
+    @Test
+    void rejectsNonPdfBeforeReadingTheBody() {
+        CountingStream in = new CountingStream(new byte[1024 * 1024]);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> PdfIngestWriter.ingest(in, dir.resolve("b.pdf.part"), Long.MAX_VALUE));
+
+        assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, ex.getStatusCode());
+        assertEquals(5, in.consumed);
+        assertFalse(Files.exists(dir.resolve("b.pdf.part")));
+    }
+
+    @Test
+    void rejectsOversizedUploadAsSoonAsTheLimitIsCrossed() {
+        byte[] body = new byte[1024 * 1024];
+        System.arraycopy("%PDF-".getBytes(StandardCharsets.US_ASCII), 0, body, 0, 5);
+        CountingStream in = new CountingStream(body);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> PdfIngestWriter.ingest(in, dir.resolve("c.pdf.part"), 100 * 1024));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ex.getStatusCode());
+        assertTrue(in.consumed < body.length);
+    }
+
+    private static final class CountingStream extends InputStream {
+        private final ByteArrayInputStream delegate;
+        long consumed;
+
+        CountingStream(byte[] bytes) {
+            this.delegate = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() {
+            int b = delegate.read();
+            if (b != -1) consumed++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int r = delegate.read(b, off, len);
+            if (r > 0) consumed += r;
+            return r;
+        }
+    }
+}
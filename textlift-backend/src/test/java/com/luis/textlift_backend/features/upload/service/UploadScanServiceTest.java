@@ -0,0 +1,118 @@
+package com.luis.textlift_backend.features.upload.service;
+
+import com.luis.textlift_backend.features.document.domain.Document;
+import com.luis.textlift_backend.features.document.domain.DocumentStatus;
+import com.luis.textlift_backend.features.document.repository.DocumentRepository;
+import com.luis.textlift_backend.features.storage.service.BlobStore;
+import com.luis.textlift_backend.features.upload.domain.UploadSession;
+import com.luis.textlift_backend.features.upload.domain.UploadStatus;
+import com.luis.textlift_backend.features.upload.repository.UploadSessionRepository;
+import com.luis.textlift_backend.features.upload.repository.VirusScanVerdictRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UploadScanServiceTest {
+    private static final String HASH = "ef".repeat(32);
+
+    private final UploadSessionRepository uploads = mock(UploadSessionRepository.class);
+    private final DocumentRepository documents = mock(DocumentRepository.class);
+    private final VirusScanVerdictRepository verdicts = mock(VirusScanVerdictRepository.class);
+    private final VirusTotalApi virusTotal = mock(VirusTotalApi.class);
+    private final UploadScanService service = new UploadScanService(uploads, documents, verdicts, virusTotal,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), mock(ApplicationEventPublisher.class),
+            mock(BlobStore.class), Duration.ofDays(7), Duration.ofDays(1));
+
+    @Test
+    void abandonedScanLeavesTheDocumentToAnotherUploadStillScanning() {
+        UploadSession session = scanningSession();
+        Document document = scanningDocument();
+        when(uploads.existsByHashAndUploadStatusAndIdNot(HASH, UploadStatus.SCANNING, session.getId())).thenReturn(true);
+
+        service.scanAbandoned(session.getId());
+
+        assertEquals(UploadStatus.FAILED, session.getUploadStatus());
+        assertEquals(DocumentStatus.SCANNING, document.getStatus());
+    }
+
+    @Test
+    void lastAbandonedScanFailsTheDocument() {
+        UploadSession session = scanningSession();
+        Document document = scanningDocument();
+
+        service.scanAbandoned(session.getId());
+
+        assertEquals(UploadStatus.FAILED, session.getUploadStatus());
+        assertEquals(DocumentStatus.FAILED_TO_GENERATE, document.getStatus());
+    }
+
+    @Test
+    void abandonedScanFailsTheDocumentItLocked() {
+        UploadSession session = scanningSession();
+        Document unlocked = scanningDocument();
+        Document locked = new Document();
+        ReflectionTestUtils.setField(locked, "id", unlocked.getId());
+        locked.setHash(HASH);
+        locked.setStatus(DocumentStatus.SCANNING);
+        when(documents.lockById(unlocked.getId())).thenReturn(Optional.of(locked));
+
+        service.scanAbandoned(session.getId());
+
+        assertEquals(DocumentStatus.FAILED_TO_GENERATE, locked.getStatus());
+        verify(documents).save(locked);
+        verify(documents, never()).save(unlocked);
+    }
+
+    @Test
+    void analyzedVerdictIsCached() {
+        UploadSession session = scanningSession();
+        when(uploads.findById(session.getId())).thenReturn(Optional.of(session));
+        when(virusTotal.check(HASH)).thenReturn(new VirusTotalApi.Result(VirusTotalApi.Verdict.UNSAFE, true));
+
+        service.scan(session.getId());
+
+        assertEquals(UploadStatus.REJECTED_UNSAFE, session.getUploadStatus());
+        verify(verdicts).upsert(eq(HASH), eq("UNSAFE"), any(), any());
+    }
+
+    @Test
+    void errorDerivedVerdictRejectsTheUploadWithoutBeingCached() {
+        UploadSession session = scanningSession();
+        when(uploads.findById(session.getId())).thenReturn(Optional.of(session));
+        when(virusTotal.check(HASH)).thenReturn(new VirusTotalApi.Result(VirusTotalApi.Verdict.UNSAFE, false));
+
+        service.scan(session.getId());
+
+        assertEquals(UploadStatus.REJECTED_UNSAFE, session.getUploadStatus());
+        verify(verdicts, never()).upsert(anyString(), anyString(), any(), any());
+    }
+
+    private UploadSession scanningSession() {
+        UploadSession session = new UploadSession();
+        ReflectionTestUtils.setField(session, "id", UUID.randomUUID());
+        session.setHash(HASH);
+        session.setUploadStatus(UploadStatus.SCANNING);
+        when(uploads.lockById(session.getId())).thenReturn(Optional.of(session));
+        return session;
+    }
+
+    private Document scanningDocument() {
+        Document document = new Document();
+        ReflectionTestUtils.setField(document, "id", UUID.randomUUID());
+        document.setHash(HASH);
+        document.setStatus(DocumentStatus.SCANNING);
+        when(documents.findByHash(HASH)).thenReturn(Optional.of(document));
+        when(documents.lockById(document.getId())).thenReturn(Optional.of(document));
+        return document;
+    }
+}
@@ -0,0 +1,302 @@
+package com.luis.textlift_backend.features.upload.service;
+
+import com.luis.textlift_backend.features.auth.domain.AuthenticatedUser;
+import com.luis.textlift_backend.features.auth.domain.RoleEnum;
+import com.luis.textlift_backend.features.auth.repository.UserRepository;
+import com.luis.textlift_backend.features.document.repository.DocumentRepository;
+import com.luis.textlift_backend.features.pipeline.service.PipelineBacklog;
+import com.luis.textlift_backend.features.storage.service.BlobKeys;
+import com.luis.textlift_backend.features.storage.service.LocalBlobStore;
+import com.luis.textlift_backend.features.upload.api.dto.ChunkProgressResponseDto;
+import com.luis.textlift_backend.features.upload.api.dto.UploadResponseDto;
+import com.luis.textlift_backend.features.upload.domain.UploadSession;
+import com.luis.textlift_backend.features.upload.domain.UploadStatus;
+import com.luis.textlift_backend.features.upload.repository.UploadSessionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+//The resumable chunk protocol: PUT /chunks/{i} with Upload-Offset, GET /chunks, POST /chunks/complete
+class UploadSessionServiceTest {
+    private static final int CHUNK = 1024;
+
+    @TempDir
+    Path dir;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UploadSession session = new UploadSession();
+    private final UploadSessionRepository uploads = mock(UploadSessionRepository.class);
+    private final UploadScanService scans = mock(UploadScanService.class);
+    private LocalBlobStore blobStore;
+    private byte[] pdf;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new AuthenticatedUser(userId, "reader@example.com", RoleEnum.USER), null));
+
+        pdf = new byte[3 * CHUNK + 100];
+        new Random(7).nextBytes(pdf);
+        System.arraycopy("%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII), 0, pdf, 0, 9);
+
+        ReflectionTestUtils.setField(session, "id", UUID.randomUUID());
+        session.setHash(sha256(pdf));
+        session.setSizeBytes((long) pdf.length);
+        session.setUploadStatus(UploadStatus.PENDING);
+        when(uploads.findByIdAndUser_Id(session.getId(), userId)).thenReturn(Optional.of(session));
+        when(uploads.lockByIdAndUserId(session.getId(), userId)).thenReturn(Optional.of(session));
+        when(uploads.save(any())).thenAnswer(call -> call.getArgument(0));
+        //A verdict is already cached, so completion goes straight to UPLOADED
+        when(scans.cachedVerdict(any())).thenReturn(Optional.of(VirusTotalApi.Verdict.SAFE));
+
+        blobStore = new LocalBlobStore(dir.resolve("blobs"));
+    }
+
+    @AfterEach
+    void clearUser() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private UploadSessionService service() {
+        return new UploadSessionService(uploads, mock(DocumentRepository.class), mock(ApplicationEventPublisher.class),
+                mock(UserRepository.class), scans, mock(PipelineBacklog.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), blobStore, dir.resolve("work"), CHUNK);
+    }
+
+    @Test
+    void chunksAssembleIntoTheDeclaredFile() throws Exception {
+        UploadSessionService service = service();
+
+        for (int i = 0; i * CHUNK < pdf.length; i++) {
+            ChunkProgressResponseDto progress = put(service, i, i * (long) CHUNK, true);
+            assertEquals(i + 1, progress.nextChunk());
+            assertEquals(UploadStatus.UPLOADING, progress.status());
+        }
+        UploadResponseDto done = service.completeChunkedUpload(session.getId(), "book.pdf");
+
+        assertEquals(UploadStatus.UPLOADED, done.status());
+        assertArrayEquals(pdf, stored());
+    }
+
+    @Test
+    void retriedChunkIsAcknowledgedWithoutAppendingAgain() throws Exception {
+        UploadSessionService service = service();
+        put(service, 0, 0, true);
+        put(service, 1, CHUNK, true);
+
+        //The response to chunk 1 was lost; the client sends it again
+        ChunkProgressResponseDto progress = put(service, 1, CHUNK, true);
+
+        assertEquals(2, progress.nextChunk());
+        assertEquals(2L * CHUNK, progress.receivedBytes());
+        assertEquals(2L * CHUNK, Files.size(dir.resolve("work/uploads/" + session.getId() + ".pdf.part")));
+        finish(service, 2);
+    }
+
+    @Test
+    void chunkAtTheWrongOffsetIsAConflict() throws Exception {
+        UploadSessionService service = service();
+        put(service, 0, 0, true);
+
+        ResponseStatusException skipped = assertThrows(ResponseStatusException.class,
+                () -> put(service, 2, 2L * CHUNK, true));
+        ResponseStatusException misplaced = assertThrows(ResponseStatusException.class,
+                () -> put(service, 1, CHUNK + 10, true));
+
+        assertEquals(HttpStatus.CONFLICT, skipped.getStatusCode());
+        assertEquals(HttpStatus.CONFLICT, misplaced.getStatusCode());
+        assertEquals(CHUNK, session.getReceivedBytes());
+    }
+
+    @Test
+    void chunkWithAWrongChecksumIsRejectedAndCanBeResent() throws Exception {
+        UploadSessionService service = service();
+        put(service, 0, 0, true);
+
+        ResponseStatusException mismatch = assertThrows(ResponseStatusException.class, () ->
+                service.uploadChunk(session.getId(), 1, CHUNK, sha256(new byte[]{1}), chunk(1)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, mismatch.getStatusCode());
+        assertEquals(1, session.getReceivedChunks());
+        assertEquals(UploadStatus.UPLOADING, session.getUploadStatus());
+        finish(service, 1);
+    }
+
+    @Test
+    void connectionDroppedMidChunkResumesFromTheLastAppendedChunk() throws Exception {
+        UploadSessionService service = service();
+        put(service, 0, 0, true);
+
+        //Half of chunk 1 arrives, then the connection drops
+        InputStream dropped = new FilterInputStream(new ByteArrayInputStream(slice(1), 0, CHUNK / 2)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int r = super.read(b, off, len);
+                if (r == -1) throw new IOException("Connection reset");
+                return r;
+            }
+        };
+        assertThrows(ResponseStatusException.class, () -> service.uploadChunk(session.getId(), 1, CHUNK, null, dropped));
+
+        ChunkProgressResponseDto progress = service.getChunkProgress(session.getId());
+        assertEquals(1, progress.nextChunk());
+        assertEquals(CHUNK, progress.receivedBytes());
+        finish(service, 1);
+    }
+
+    @Test
+    void concurrentRetriesOfAChunkStageSeparately() throws Exception {
+        UploadSessionService service = service();
+        CountDownLatch firstStaged = new CountDownLatch(1);
+        CountDownLatch retryReading = new CountDownLatch(1);
+        CountDownLatch releaseRetry = new CountDownLatch(1);
+        AtomicBoolean firstLock = new AtomicBoolean(true);
+        //The first request has staged chunk 0 and waits for the row lock while the retry is still arriving
+        when(uploads.lockByIdAndUserId(session.getId(), userId)).thenAnswer(call -> {
+            if (firstLock.getAndSet(false)) {
+                firstStaged.countDown();
+                assertTrue(retryReading.await(5, TimeUnit.SECONDS));
+            }
+            return Optional.of(session);
+        });
+        InputStream slowRetry = new FilterInputStream(chunk(0)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                retryReading.countDown();
+                try {
+                    releaseRetry.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.read(b, off, len);
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<ChunkProgressResponseDto> first = pool.submit(asUser(() -> put(service, 0, 0, true)));
+            assertTrue(firstStaged.await(5, TimeUnit.SECONDS));
+            Future<ChunkProgressResponseDto> retry = pool.submit(asUser(() ->
+                    service.uploadChunk(session.getId(), 0, 0, sha256(slice(0)), slowRetry)));
+
+            assertEquals(1, first.get(10, TimeUnit.SECONDS).nextChunk());
+            releaseRetry.countDown();
+            assertEquals(1, retry.get(10, TimeUnit.SECONDS).nextChunk());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertArrayEquals(slice(0), Files.readAllBytes(dir.resolve("work/uploads/" + session.getId() + ".pdf.part")));
+        try (var staged = Files.list(dir.resolve("work/uploads"))) {
+            assertEquals(1, staged.count());
+        }
+        finish(service, 1);
+    }
+
+    @Test
+    void completionRehashesTheFileWhenTheRunningHashIsGone() throws Exception {
+        put(service(), 0, 0, true);
+        put(service(), 1, CHUNK, true);
+
+        //Each service() is a fresh instance, as after a restart: no running hash for the file so far
+        UploadSessionService restarted = service();
+        put(restarted, 2, 2L * CHUNK, true);
+        put(restarted, 3, 3L * CHUNK, true);
+
+        assertEquals(UploadStatus.UPLOADED, restarted.completeChunkedUpload(session.getId(), "book.pdf").status());
+    }
+
+    @Test
+    void assembledFileMustMatchTheDeclaredHash() throws Exception {
+        session.setHash(sha256(new byte[]{42}));
+        UploadSessionService service = service();
+        for (int i = 0; i * CHUNK < pdf.length; i++) {
+            put(service, i, i * (long) CHUNK, false);
+        }
+
+        ResponseStatusException mismatch = assertThrows(ResponseStatusException.class,
+                () -> service.completeChunkedUpload(session.getId(), "book.pdf"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, mismatch.getStatusCode());
+        assertEquals(UploadStatus.FAILED, session.getUploadStatus());
+        assertFalse(blobStore.exists(BlobKeys.pdf(session.getHash())));
+    }
+
+    private void finish(UploadSessionService service, int fromChunk) throws Exception {
+        for (int i = fromChunk; i * CHUNK < pdf.length; i++) {
+            put(service, i, i * (long) CHUNK, true);
+        }
+        assertEquals(UploadStatus.UPLOADED, service.completeChunkedUpload(session.getId(), "book.pdf").status());
+        assertArrayEquals(pdf, stored());
+    }
+
+    private byte[] stored() throws IOException {
+        try (InputStream in = blobStore.open(BlobKeys.pdf(session.getHash()))) {
+            return in.readAllBytes();
+        }
+    }
+
+    //CurrentUser is per thread
+    private <T> Callable<T> asUser(Callable<T> call) {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        return () -> {
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+            try {
+                return call.call();
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        };
+    }
+
+    private ChunkProgressResponseDto put(UploadSessionService service, int index, long offset, boolean checksum)
+            throws Exception {
+        return service.uploadChunk(session.getId(), index, offset, checksum ? sha256(slice(index)) : null, chunk(index));
+    }
+
+    private InputStream chunk(int index) {
+        return new ByteArrayInputStream(slice(index));
+    }
+
+    private byte[] slice(int index) {
+        return Arrays.copyOfRange(pdf, index * CHUNK, Math.min(pdf.length, (index + 1) * CHUNK));
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
@@ -0,0 +1,45 @@
+package com.luis.textlift_backend.features.upload.service;
+
+import com.luis.textlift_backend.features.config.metrics.PipelineMetrics;
+import com.luis.textlift_backend.features.upload.api.dto.VirusTotalResponseDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class VirusTotalApiTest {
+    private static final String HASH = "ab".repeat(32);
+
+    private final RestTemplate rest = mock(RestTemplate.class);
+    private final VirusTotalApi api = new VirusTotalApi(rest, "key",
+            new PipelineMetrics(new SimpleMeterRegistry()), "https://vt.test");
+
+    @Test
+    void authErrorsAreRetriedNotRejected() {
+        respondWith(HttpStatus.UNAUTHORIZED);
+        assertEquals(new VirusTotalApi.Result(VirusTotalApi.Verdict.RETRY_LATER, false), api.check(HASH));
+
+        respondWith(HttpStatus.FORBIDDEN);
+        assertEquals(new VirusTotalApi.Result(VirusTotalApi.Verdict.RETRY_LATER, false), api.check(HASH));
+    }
+
+    @Test
+    void unknownFileIsRejectedButNotAnAnalysis() {
+        respondWith(HttpStatus.NOT_FOUND);
+
+        assertEquals(new VirusTotalApi.Result(VirusTotalApi.Verdict.UNSAFE, false), api.check(HASH));
+    }
+
+    private void respondWith(HttpStatus status) {
+        when(rest.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), eq(VirusTotalResponseDto.class)))
+                .thenThrow(HttpClientErrorException.create(status, status.getReasonPhrase(), HttpHeaders.EMPTY, null, null));
+    }
+}
@@ -0,0 +1,95 @@
+package com.luis.textlift_backend.loadtest;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+//Response delay of a stub endpoint, parsed from a spec string:
+//  fixed:50ms               always 50 ms
+//  uniform:10ms..200ms      uniformly between the two
+//  lognormal:800ms,4s       log-normal with that median and 99th percentile (long-tailed, like LLM calls)
+//  none                     no delay
+//Durations take ms or s.
+public final class LatencyDistribution {
+    //z-score of the 99th percentile of a standard normal
+    private static final double Z_99 = 2.3263;
+
+    private final String spec;
+    private final Kind kind;
+    private final double a;
+    private final double b;
+
+    private enum Kind { NONE, FIXED, UNIFORM, LOGNORMAL }
+
+    private LatencyDistribution(String spec, Kind kind, double a, double b) {
+        this.spec = spec;
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+
+    public static LatencyDistribution parse(String spec) {
+        String s = spec.trim().toLowerCase(Locale.ROOT);
+        if (s.isEmpty() || s.equals("none")) {
+            return new LatencyDistribution(spec, Kind.NONE, 0, 0);
+        }
+        int colon = s.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Latency spec needs a kind: " + spec);
+        }
+        String args = s.substring(colon + 1);
+        switch (s.substring(0, colon)) {
+            case "fixed" -> {
+                return new LatencyDistribution(spec, Kind.FIXED, millis(args), 0);
+            }
+            case "uniform" -> {
+                String[] range = args.split("\\.\\.");
+                if (range.length != 2) throw new IllegalArgumentException("uniform needs min..max: " + spec);
+                double min = millis(range[0]);
+                double max = millis(range[1]);
+                if (max < min) throw new IllegalArgumentException("uniform max below min: " + spec);
+                return new LatencyDistribution(spec, Kind.UNIFORM, min, max);
+            }
+            case "lognormal" -> {
+                String[] params = args.split(",");
+                if (params.length != 2) throw new IllegalArgumentException("lognormal needs median,p99: " + spec);
+                double median = millis(params[0]);
+                double p99 = millis(params[1]);
+                if (median <= 0 || p99 < median) throw new IllegalArgumentException("lognormal needs 0 < median <= p99: " + spec);
+                //mu and sigma of the underlying normal
+                return new LatencyDistribution(spec, Kind.LOGNORMAL, Math.log(median), Math.log(p99 / median) / Z_99);
+            }
+            default -> throw new IllegalArgumentException("Unknown latency kind: " + spec);
+        }
+    }
+
+    public Duration sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double ms = switch (kind) {
+            case NONE -> 0;
+            case FIXED -> a;
+            case UNIFORM -> a + random.nextDouble() * (b - a);
+            case LOGNORMAL -> Math.exp(a + b * random.nextGaussian());
+        };
+        return Duration.ofNanos((long) (ms * 1_000_000));
+    }
+
+    public void sleep() throws InterruptedException {
+        Duration delay = sample();
+        if (!delay.isZero()) {
+            Thread.sleep(delay);
+        }
+    }
+
+    private static double millis(String value) {
+        String v = value.trim();
+        if (v.endsWith("ms")) return Double.parseDouble(v.substring(0, v.length() - 2));
+        if (v.endsWith("s")) return Double.parseDouble(v.substring(0, v.length() - 1)) * 1000;
+        throw new IllegalArgumentException("Duration needs ms or s: " + value);
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
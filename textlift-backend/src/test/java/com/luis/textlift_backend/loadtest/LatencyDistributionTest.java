@@ -0,0 +1,37 @@
+package com.luis.textlift_backend.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyDistributionTest {
+
+    @Test
+    void parsesEachKind() {
+        assertEquals(Duration.ZERO, LatencyDistribution.parse("none").sample());
+        assertEquals(Duration.ofMillis(50), LatencyDistribution.parse("fixed:50ms").sample());
+        for (int i = 0; i < 1_000; i++) {
+            long ms = LatencyDistribution.parse("uniform:10ms..0.2s").sample().toMillis();
+            assertTrue(ms >= 10 && ms <= 200, "sampled " + ms);
+        }
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("uniform:200ms..10ms"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("gamma:1s"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("fixed:50"));
+    }
+
+    @Test
+    void lognormalMatchesItsMedianAndP99() {
+        LatencyDistribution latency = LatencyDistribution.parse("lognormal:800ms,4s");
+        long[] samples = new long[100_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = latency.sample().toMillis();
+        }
+        Arrays.sort(samples);
+
+        assertEquals(800, samples[samples.length / 2], 40);
+        assertEquals(4_000, samples[samples.length * 99 / 100], 400);
+    }
+}
@@ -0,0 +1,357 @@
+package com.luis.textlift_backend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.luis.textlift_backend.benchmark.PdfFixtures;
+import com.luis.textlift_backend.features.document.domain.DocumentStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+//End-to-end load against a running backend, normally pointed at StubServers. Each simulated user
+//signs up and logs in, then uploads freshly generated PDFs (unique content, so no upload cache hits,
+//and a valid ISBN on the first page): POST /upload -> /file -> /finalize, then follows the
+//document's status stream to a terminal status and fetches its annotations.
+//Reports throughput and p50/p99 per stage. Run it from the IDE or with
+//  mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.luis.textlift_backend.loadtest.LoadGenerator
+//and these system properties:
+//  -Dload.base-url=http://localhost:8080  -Dload.users=4  -Dload.documents=40
+//  -Dload.concurrency=8  -Dload.pages=60  -Dload.timeout=PT30M
+//The backend's per-address rate limit must be raised (textlift.ratelimit.requests-per-minute).
+public final class LoadGenerator {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String PASSWORD = "load-test-password";
+
+    private final URI baseUrl;
+    private final int pages;
+    private final Duration timeout;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final Path workDir;
+    private final Stats stats = new Stats();
+    private final Map<String, AtomicInteger> outcomes = new ConcurrentHashMap<>();
+
+    LoadGenerator(URI baseUrl, int pages, Duration timeout, Path workDir) {
+        this.baseUrl = baseUrl;
+        this.pages = pages;
+        this.timeout = timeout;
+        this.workDir = workDir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI baseUrl = URI.create(System.getProperty("load.base-url", "http://localhost:8080"));
+        int users = Integer.getInteger("load.users", 4);
+        int documents = Integer.getInteger("load.documents", 40);
+        int concurrency = Integer.getInteger("load.concurrency", 8);
+        int pages = Integer.getInteger("load.pages", 60);
+        Duration timeout = Duration.parse(System.getProperty("load.timeout", "PT30M"));
+
+        Path workDir = Files.createTempDirectory("textlift-load");
+        LoadGenerator load = new LoadGenerator(baseUrl, pages, timeout, workDir);
+        try {
+            List<String> tokens = new ArrayList<>(users);
+            String run = UUID.randomUUID().toString().substring(0, 8);
+            for (int i = 0; i < users; i++) {
+                tokens.add(load.signUpAndLogIn("load-" + run + "-" + i + "@example.com"));
+            }
+
+            System.out.printf("Uploading %d documents of %d pages as %d users, %d at a time, against %s%n",
+                    documents, pages, users, concurrency, baseUrl);
+            long started = System.nanoTime();
+            ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+            for (int i = 0; i < documents; i++) {
+                String token = tokens.get(i % users);
+                pool.submit(() -> load.runDocument(token));
+            }
+            pool.shutdown();
+            if (!pool.awaitTermination(timeout.toMillis() * documents, TimeUnit.MILLISECONDS)) {
+                pool.shutdownNow();
+            }
+            load.report(Duration.ofNanos(System.nanoTime() - started));
+        } finally {
+            try (Stream<Path> files = Files.list(workDir)) {
+                for (Path p : files.toList()) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(workDir);
+        }
+    }
+
+    private String signUpAndLogIn(String email) throws IOException, InterruptedException {
+        String credentials = JSON.writeValueAsString(Map.of("email", email, "password", PASSWORD));
+        send(post("/api/v1/auth/signup", null, JSON.writeValueAsString(
+                Map.of("email", email, "password", PASSWORD, "fullName", "Load Test"))), 200);
+        HttpResponse<String> login = send(post("/api/v1/auth/login", null, credentials), 200);
+        return login.headers().allValues("Set-Cookie").stream()
+                .filter(c -> c.startsWith("ACCESS_TOKEN="))
+                .map(c -> c.substring("ACCESS_TOKEN=".length(), c.contains(";") ? c.indexOf(';') : c.length()))
+                .findFirst()
+                .orElseThrow(() -> new IOException("Login returned no ACCESS_TOKEN cookie"));
+    }
+
+    private void runDocument(String token) {
+        String stage = "generate";
+        try {
+            byte[] pdf = generatePdf();
+            String hash = sha256(pdf);
+            long start = System.nanoTime();
+
+            stage = "create";
+            JsonNode created = timed(stage, () -> json(send(post("/api/v1/upload", token,
+                    JSON.writeValueAsString(Map.of("hash", hash, "sizeBytes", pdf.length))), 201)));
+            if (!"NEW_UPLOAD".equals(created.path("uploadMode").asText())) {
+                outcome("cache_hit");
+                return;
+            }
+            String uploadId = created.path("uploadId").asText();
+
+            stage = "upload";
+            timed(stage, () -> send(multipart("/api/v1/upload/" + uploadId + "/file", token, pdf), 200));
+
+            stage = "finalize";
+            JsonNode finalized = timed(stage, () -> finalizeWithBackoff(uploadId, token));
+            String documentId = finalized.path("documentId").asText();
+            long finalizedAt = System.nanoTime();
+
+            stage = "pipeline";
+            Map<DocumentStatus, Long> seen = followStatus(documentId, token);
+            recordStages(seen, finalizedAt);
+            DocumentStatus terminal = terminal(seen).orElse(null);
+            stats.record("end_to_end", System.nanoTime() - start);
+
+            if (terminal != DocumentStatus.ANNOTATIONS_READY) {
+                outcome(terminal == null ? "timed_out" : terminal.name().toLowerCase());
+                return;
+            }
+            stage = "fetch";
+            JsonNode notes = timed(stage, () -> json(send(get("/api/v1/annotation/document/" + documentId, token), 200)));
+            stats.count("notes", notes.path("notes").size());
+            outcome("annotations_ready");
+        } catch (Exception e) {
+            outcome("failed_at_" + stage);
+            System.err.println("Document failed at " + stage + ": " + e.getMessage());
+        }
+    }
+
+    //finalize answers 503 with Retry-After while the extract backlog is full
+    private JsonNode finalizeWithBackoff(String uploadId, String token) throws IOException, InterruptedException {
+        while (true) {
+            HttpResponse<String> response = http.send(post("/api/v1/upload/" + uploadId + "/finalize", token, ""),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 503) {
+                return json(check(response, 200));
+            }
+            stats.count("finalize_backpressure", 1);
+            long seconds = response.headers().firstValueAsLong("Retry-After").orElse(5);
+            Thread.sleep(Duration.ofSeconds(Math.max(1, seconds)));
+        }
+    }
+
+    //First time each status was seen on the document's SSE stream, until a terminal one or the timeout
+    private Map<DocumentStatus, Long> followStatus(String documentId, String token) throws IOException, InterruptedException {
+        Map<DocumentStatus, Long> seen = new EnumMap<>(DocumentStatus.class);
+        HttpRequest request = request("/api/v1/documents/" + documentId + "/events", token)
+                .header("Accept", "text/event-stream")
+                .timeout(timeout)
+                .GET()
+                .build();
+        HttpResponse<Stream<String>> response = http.send(request, HttpResponse.BodyHandlers.ofLines());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Status stream returned " + response.statusCode());
+        }
+        try (Stream<String> lines = response.body()) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                if (!line.startsWith("data:")) continue;
+                JsonNode event = JSON.readTree(line.substring("data:".length()));
+                seen.putIfAbsent(DocumentStatus.valueOf(event.path("status").asText()), System.nanoTime());
+                if (event.path("terminal").asBoolean()) break;
+            }
+        } catch (Exception e) {
+            //Stream timed out or dropped; report whatever was seen
+        }
+        return seen;
+    }
+
+    //Stages are the gaps between status transitions; one is skipped when the stream missed an end
+    private void recordStages(Map<DocumentStatus, Long> seen, long finalizedAt) {
+        between(seen, "to_identification", finalizedAt, seen.get(DocumentStatus.TEXTBOOK_SCANNING));
+        between(seen, "identify", seen.get(DocumentStatus.TEXTBOOK_SCANNING), seen.get(DocumentStatus.TEXTBOOK_IDENTIFIED));
+        between(seen, "to_annotation", seen.get(DocumentStatus.TEXTBOOK_IDENTIFIED), seen.get(DocumentStatus.ANNOTATIONS_GENERATING));
+        between(seen, "annotate", seen.get(DocumentStatus.ANNOTATIONS_GENERATING), seen.get(DocumentStatus.ANNOTATIONS_READY));
+    }
+
+    private void between(Map<DocumentStatus, Long> seen, String stage, Long from, Long to) {
+        if (from != null && to != null && to >= from) {
+            stats.record(stage, to - from);
+        }
+    }
+
+    private static Optional<DocumentStatus> terminal(Map<DocumentStatus, Long> seen) {
+        return Stream.of(DocumentStatus.ANNOTATIONS_READY, DocumentStatus.FAILED_TO_GENERATE, DocumentStatus.FAILED_TO_IDENTIFY_ISBN)
+                .filter(seen::containsKey)
+                .findFirst();
+    }
+
+    private byte[] generatePdf() throws IOException {
+        Path file = workDir.resolve(UUID.randomUUID() + ".pdf");
+        try {
+            PdfFixtures.textbook(file, pages, "Load test edition " + UUID.randomUUID() + " ISBN " + randomIsbn13());
+            return Files.readAllBytes(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static String randomIsbn13() {
+        StringBuilder isbn = new StringBuilder("978");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 9; i++) isbn.append(random.nextInt(10));
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int d = isbn.charAt(i) - '0';
+            sum += (i % 2 == 0) ? d : 3 * d;
+        }
+        return isbn.append((10 - sum % 10) % 10).toString();
+    }
+
+    private void outcome(String name) {
+        outcomes.computeIfAbsent(name, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void report(Duration wall) {
+        int completed = outcomes.getOrDefault("annotations_ready", new AtomicInteger()).get();
+        System.out.printf("%nWall time %.1f s, %d documents annotated, %.2f documents/min%n",
+                wall.toMillis() / 1000.0, completed, completed / Math.max(wall.toMillis() / 60_000.0, 1e-9));
+        System.out.println("Outcomes: " + new TreeMap<>(outcomes));
+        System.out.println(stats.table());
+    }
+
+    //HTTP plumbing
+
+    private interface Call<T> {
+        T run() throws IOException, InterruptedException;
+    }
+
+    private <T> T timed(String stage, Call<T> call) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        T result = call.run();
+        stats.record(stage, System.nanoTime() - start);
+        return result;
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(baseUrl.resolve(path)).timeout(Duration.ofMinutes(2));
+        if (token != null) builder.header("Cookie", "ACCESS_TOKEN=" + token);
+        return builder;
+    }
+
+    private HttpRequest get(String path, String token) {
+        return request(path, token).GET().build();
+    }
+
+    private HttpRequest post(String path, String token, String jsonBody) {
+        return request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
+                .build();
+    }
+
+    private HttpRequest multipart(String path, String token, byte[] pdf) throws IOException {
+        String boundary = "----textlift-load-" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(pdf.length + 512);
+        body.write(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"book.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.write(pdf);
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return request(path, token)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request, int expectedStatus) throws IOException, InterruptedException {
+        return check(http.send(request, HttpResponse.BodyHandlers.ofString()), expectedStatus);
+    }
+
+    private static HttpResponse<String> check(HttpResponse<String> response, int expectedStatus) throws IOException {
+        if (response.statusCode() != expectedStatus) {
+            throw new IOException(response.request().method() + " " + response.request().uri().getPath()
+                    + " returned " + response.statusCode() + ": " + response.body());
+        }
+        return response;
+    }
+
+    private static JsonNode json(HttpResponse<String> response) throws IOException {
+        return JSON.readTree(response.body());
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //Per-stage latencies (ns) and plain counters, reported as nearest-rank percentiles
+    static final class Stats {
+        private final Map<String, List<Long>> samples = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+        void record(String stage, long nanos) {
+            samples.computeIfAbsent(stage, k -> new ArrayList<>());
+            List<Long> list = samples.get(stage);
+            synchronized (list) {
+                list.add(nanos);
+            }
+        }
+
+        void count(String name, int amount) {
+            counters.computeIfAbsent(name, k -> new AtomicInteger()).addAndGet(amount);
+        }
+
+        String table() {
+            StringBuilder sb = new StringBuilder(String.format("%-20s %7s %10s %10s %10s%n", "stage", "count", "p50 ms", "p99 ms", "max ms"));
+            for (Map.Entry<String, List<Long>> entry : new TreeMap<>(samples).entrySet()) {
+                long[] sorted;
+                synchronized (entry.getValue()) {
+                    sorted = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+                }
+                sb.append(String.format("%-20s %7d %10.1f %10.1f %10.1f%n", entry.getKey(), sorted.length,
+                        percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6));
+            }
+            new TreeMap<>(counters).forEach((name, value) -> sb.append(name).append(": ").append(value.get()).append('\n'));
+            return sb.toString();
+        }
+
+        static long percentile(long[] sorted, int p) {
+            int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.luis.textlift_backend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+//One embedded HTTP server standing in for every outbound dependency of the pipeline, so it can be
+//load tested without Ollama, Google or VirusTotal:
+//  POST /api/chat                     Ollama chat API; one note per chunk, quoting its first line
+//  GET  /books/v1/volumes?q=isbn:...  Google Books; every ISBN is found
+//  GET  /api/v3/files/{hash}          VirusTotal; every file is clean
+//Each endpoint sleeps per a LatencyDistribution and fails a fraction of calls (Ollama with 500,
+//the other two with 429, their usual throttling answer). Run it with
+//  mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.luis.textlift_backend.loadtest.StubServers
+//(or from the IDE) and tune it with system properties:
+//  -Dstub.port=9099
+//  -Dstub.ollama.latency=lognormal:2s,15s     -Dstub.ollama.error-rate=0.01
+//  -Dstub.books.latency=lognormal:120ms,800ms -Dstub.books.error-rate=0
+//  -Dstub.virustotal.latency=uniform:200ms..900ms -Dstub.virustotal.error-rate=0
+//then start the backend against it (main prints the exact properties).
+public final class StubServers implements AutoCloseable {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public record Endpoint(LatencyDistribution latency, double errorRate) {
+        static Endpoint fromSystemProperties(String name, String defaultLatency) {
+            return new Endpoint(
+                    LatencyDistribution.parse(System.getProperty("stub." + name + ".latency", defaultLatency)),
+                    Double.parseDouble(System.getProperty("stub." + name + ".error-rate", "0")));
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Counters ollamaCalls = new Counters();
+    private final Counters booksCalls = new Counters();
+    private final Counters virusTotalCalls = new Counters();
+
+    private StubServers(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    public static StubServers start(int port, Endpoint ollama, Endpoint books, Endpoint virusTotal) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        //Latency is simulated by sleeping, so every request gets its own (virtual) thread
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        StubServers stubs = new StubServers(server, executor);
+
+        server.createContext("/api/chat", exchange ->
+                stubs.handle(exchange, "POST", ollama, stubs.ollamaCalls, 500, StubServers::chatResponse));
+        server.createContext("/books/v1/volumes", exchange ->
+                stubs.handle(exchange, "GET", books, stubs.booksCalls, 429, StubServers::volumesResponse));
+        server.createContext("/api/v3/files/", exchange ->
+                stubs.handle(exchange, "GET", virusTotal, stubs.virusTotalCalls, 429, StubServers::fileReportResponse));
+        server.start();
+        return stubs;
+    }
+
+    public static StubServers fromSystemProperties() throws IOException {
+        return start(
+                Integer.getInteger("stub.port", 9099),
+                Endpoint.fromSystemProperties("ollama", "lognormal:2s,15s"),
+                Endpoint.fromSystemProperties("books", "lognormal:120ms,800ms"),
+                Endpoint.fromSystemProperties("virustotal", "uniform:200ms..900ms"));
+    }
+
+    public URI baseUrl() {
+        return URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    public String summary() {
+        return "ollama " + ollamaCalls + ", books " + booksCalls + ", virustotal " + virusTotalCalls;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private interface Responder {
+        JsonNode respond(HttpExchange exchange) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint, Counters counters,
+                        int errorStatus, Responder responder) throws IOException {
+        try (exchange) {
+            if (!method.equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("method not allowed"));
+                return;
+            }
+            counters.requests.incrementAndGet();
+            try {
+                endpoint.latency().sleep();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (ThreadLocalRandom.current().nextDouble() < endpoint.errorRate()) {
+                counters.errors.incrementAndGet();
+                send(exchange, errorStatus, error("injected stub failure"));
+                return;
+            }
+            send(exchange, 200, responder.respond(exchange));
+        }
+    }
+
+    //Non-streaming /api/chat reply, as Spring AI's OllamaApi reads it
+    private static JsonNode chatResponse(HttpExchange exchange) throws IOException {
+        JsonNode request = JSON.readTree(exchange.getRequestBody());
+        String prompt = "";
+        for (JsonNode message : request.path("messages")) {
+            if ("user".equals(message.path("role").asText())) prompt = message.path("content").asText();
+        }
+        int text = prompt.lastIndexOf("TEXT:");
+        String chunk = text >= 0 ? prompt.substring(text + "TEXT:".length()).strip() : prompt;
+        String quote = chunk.lines().findFirst().orElse("").strip();
+        if (quote.length() > 120) quote = quote.substring(0, 120);
+
+        ArrayNode notes = JSON.createArrayNode();
+        if (!quote.isEmpty()) {
+            notes.addObject()
+                    .put("note", "Stub note for load testing.")
+                    .put("reason", "Generated by the stub LLM.")
+                    .put("quote", quote)
+                    .put("location", "start of chunk");
+        }
+
+        ObjectNode response = JSON.createObjectNode();
+        response.put("model", request.path("model").asText("stub"));
+        response.put("created_at", Instant.now().toString());
+        response.putObject("message")
+                .put("role", "assistant")
+                .put("content", JSON.writeValueAsString(notes));
+        response.put("done_reason", "stop");
+        response.put("done", true);
+        response.put("prompt_eval_count", prompt.length() / 4);
+        response.put("eval_count", 60);
+        return response;
+    }
+
+    private static JsonNode volumesResponse(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getQuery();
+        String isbn = query != null && query.startsWith("q=isbn:") ? query.substring("q=isbn:".length()) : "unknown";
+
+        ObjectNode response = JSON.createObjectNode();
+        response.put("kind", "books#volumes");
+        response.put("totalItems", 1);
+        ObjectNode item = response.putArray("items").addObject();
+        item.put("kind", "books#volume");
+        item.put("id", "stub-" + isbn);
+        ObjectNode volume = item.putObject("volumeInfo");
+        volume.put("title", "Stub Textbook " + isbn);
+        volume.putArray("authors").add("Load Test");
+        volume.put("publisher", "Stub Press");
+        volume.put("publishedDate", "2020");
+        volume.put("description", "Returned by the load-test stub.");
+        volume.put("pageCount", 100);
+        item.putObject("searchInfo").put("textSnippet", "Stub snippet");
+        return response;
+    }
+
+    private static JsonNode fileReportResponse(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        String hash = path.substring(path.lastIndexOf('/') + 1);
+
+        ObjectNode response = JSON.createObjectNode();
+        ObjectNode data = response.putObject("data");
+        data.put("id", hash);
+        data.put("type", "file");
+        ObjectNode attributes = data.putObject("attributes");
+        attributes.putObject("last_analysis_stats")
+                .put("malicious", 0)
+                .put("suspicious", 0)
+                .put("undetected", 60)
+                .put("harmless", 0);
+        attributes.putArray("crowdsourced_yara_results");
+        return response;
+    }
+
+    private static JsonNode error(String message) {
+        return JSON.createObjectNode().put("error", message);
+    }
+
+    private static void send(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = JSON.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static final class Counters {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        @Override
+        public String toString() {
+            return requests.get() + " requests (" + errors.get() + " failed)";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        StubServers stubs = fromSystemProperties();
+        URI base = stubs.baseUrl();
+        System.out.println("Stub servers listening on " + base);
+        System.out.println("Start the backend with:");
+        System.out.println("  OLLAMA_HOST=" + base + " VIRUSTOTAL_API_KEY=stub");
+        System.out.println("  --textlift.books.base-url=" + base + " --virustotal.base-url=" + base);
+        System.out.println("  --textlift.ratelimit.requests-per-minute=1000000");
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Served: " + stubs.summary());
+            stubs.close();
+            stopped.countDown();
+        }));
+        stopped.await();
+    }
+}